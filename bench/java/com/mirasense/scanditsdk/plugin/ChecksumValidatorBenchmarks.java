@@ -0,0 +1,61 @@
+//
+//  Copyright 2010 Mirasense AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+//
+//
+
+package com.mirasense.scanditsdk.plugin;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mirasense.scanditsdk.interfaces.ScanditSDK;
+
+/**
+ * Check digit validation of the validateChecksums option, which runs for every recognized code.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChecksumValidatorBenchmarks {
+    
+    @Benchmark
+    public boolean ean13() {
+        return ChecksumValidator.isValid("4006381333931", "EAN13", ScanditSDK.CHECKSUM_MOD_10);
+    }
+    
+    @Benchmark
+    public boolean upce() {
+        return ChecksumValidator.isValid("04252614", "UPCE", ScanditSDK.CHECKSUM_MOD_10);
+    }
+    
+    @Benchmark
+    public boolean itf14() {
+        return ChecksumValidator.isValid("10012345678902", "ITF", ScanditSDK.CHECKSUM_MOD_10);
+    }
+    
+    @Benchmark
+    public boolean msiPlesseyMod1110() {
+        return ChecksumValidator.isValid("1234558", "MSI", ScanditSDK.CHECKSUM_MOD_1110);
+    }
+}
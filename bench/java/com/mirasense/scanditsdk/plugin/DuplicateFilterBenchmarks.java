@@ -0,0 +1,78 @@
+//
+//  Copyright 2010 Mirasense AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+//
+//
+
+package com.mirasense.scanditsdk.plugin;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The duplicate filter of continuous mode, fed with codes as a camera held over a shelf reports 
+ * them: the same few codes many times in a row, drawn from more codes than the filter remembers.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DuplicateFilterBenchmarks {
+    
+    private static final int STREAM_LENGTH = 4096;
+    
+    @Param({ "100", "1000" })
+    public int mCacheSize;
+    
+    private String[] mStream;
+    private DuplicateFilter mFilter;
+    private int mNext;
+    private long mNow;
+    
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        mStream = new String[STREAM_LENGTH];
+        int code = 0;
+        for (int i = 0; i < STREAM_LENGTH; i++) {
+            if (random.nextInt(8) == 0) {
+                code = random.nextInt(mCacheSize * 2);
+            }
+            mStream[i] = String.format("40123456%05d", code);
+        }
+        mFilter = new DuplicateFilter(2000, mCacheSize);
+    }
+    
+    @Benchmark
+    public boolean accept() {
+        String barcode = mStream[mNext++ & (STREAM_LENGTH - 1)];
+        // Codes arrive every 20 ms, such that entries expire within the stream.
+        mNow += 20;
+        return mFilter.accept(barcode, "EAN13", mNow);
+    }
+}
@@ -0,0 +1,66 @@
+//
+//  Copyright 2010 Mirasense AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+//
+//
+
+package com.mirasense.scanditsdk.plugin;
+
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * GS1 parsing of the gs1 option, which runs for every reported Code 128, Data Matrix and QR code.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Gs1ParserBenchmarks {
+    
+    private static final char GS = Gs1Parser.GS;
+    
+    // GTIN, best before date, batch and net weight, as on a case of produce.
+    private static final String LOGISTICS_LABEL = 
+            "]C10109506000134352172712311012AB" + GS + "3103001250";
+    // GTIN, expiry, batch and serial number, as on a pharmaceutical pack.
+    private static final String PHARMA_PACK = 
+            GS + "010950600013435217270630" + "10A1B2C3" + GS + "21SN0000123456789";
+    // A Code 128 code that is not GS1 data, rejected before it is parsed.
+    private static final String PLAIN = "0109506000134352";
+    
+    @Benchmark
+    public JSONObject parseLogisticsLabel() {
+        return Gs1Parser.parse(LOGISTICS_LABEL, "CODE128");
+    }
+    
+    @Benchmark
+    public JSONObject parsePharmaPack() {
+        return Gs1Parser.parse(PHARMA_PACK, "DATAMATRIX");
+    }
+    
+    @Benchmark
+    public JSONObject rejectUnmarked() {
+        return Gs1Parser.parse(PLAIN, "CODE128");
+    }
+}
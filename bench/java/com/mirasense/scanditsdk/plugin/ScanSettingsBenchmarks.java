@@ -0,0 +1,298 @@
+//
+//  Copyright 2010 Mirasense AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+//
+//
+
+package com.mirasense.scanditsdk.plugin;
+
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mirasense.scanditsdk.interfaces.ScanditSDK;
+import com.mirasense.scanditsdk.interfaces.ScanditSDKListener;
+import com.mirasense.scanditsdk.interfaces.ScanditSDKOverlay;
+
+/**
+ * Parsing the options of a scan call and applying them to a picker, which happens on every scan.
+ * The picker only counts the setter calls, such that the plugin's own work is measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ScanSettingsBenchmarks {
+    
+    private static final String OPTIONS = "{\"continuousMode\": true, \"beep\": false, "
+            + "\"code39\": false, \"itf\": false, \"qr\": true, \"dataMatrix\": true, "
+            + "\"msiPlesseyChecksumType\": \"mod11\", \"scanningHotSpot\": \"0.5/0.4\", "
+            + "\"scanningHotSpotHeight\": 0.3, \"titleMessage\": \"Scan the shelf label\", "
+            + "\"viewfinderColor\": \"FF8800\", \"duplicateFilterWindow\": 2000, "
+            + "\"batchSize\": 10, \"validateChecksums\": true}";
+    private static final String RAW_ARGS = "[\"appKey\", " + OPTIONS + "]";
+    private static final String CHANGED_ARGS = "[\"appKey\", {\"beep\": true, \"qr\": false, "
+            + "\"titleMessage\": \"Scan the pallet\"}]";
+    
+    private CountingPicker mPicker;
+    private ScanSettings mSettings;
+    private ScanSettings mChanged;
+    private int mNext;
+    
+    @Setup
+    public void setUp() throws JSONException {
+        mPicker = new CountingPicker();
+        mSettings = ScanSettings.forArgs(RAW_ARGS);
+        mChanged = ScanSettings.forArgs(CHANGED_ARGS);
+    }
+    
+    /**
+     * A repeated scan call with the identical argument string.
+     */
+    @Benchmark
+    public ScanSettings parseCached() throws JSONException {
+        return ScanSettings.forArgs(RAW_ARGS);
+    }
+    
+    /**
+     * A scan call whose arguments were not seen before. The trailing number is ignored.
+     */
+    @Benchmark
+    public ScanSettings parseNew() throws JSONException {
+        return ScanSettings.forArgs("[\"appKey\", " + OPTIONS + ", " + mNext++ + "]");
+    }
+    
+    /**
+     * Applying the options to a newly constructed picker.
+     */
+    @Benchmark
+    public int applyToNewPicker() {
+        mSettings.applyTo(mPicker);
+        return mPicker.mCalls;
+    }
+    
+    /**
+     * Applying the options to the prepared picker that the same options were applied to before.
+     */
+    @Benchmark
+    public int applyUnchanged() {
+        mSettings.applyReplacing(mPicker, mSettings);
+        return mPicker.mCalls;
+    }
+    
+    /**
+     * Applying the options to the prepared picker that other options were applied to before.
+     */
+    @Benchmark
+    public int applyChanged() {
+        mChanged.applyReplacing(mPicker, mSettings);
+        return mPicker.mCalls;
+    }
+    
+    private static final class CountingPicker implements ScanditSDK, ScanditSDKOverlay {
+        
+        int mCalls;
+        
+        public ScanditSDKOverlay getOverlayView() {
+            return this;
+        }
+        
+        public void startScanning() {
+            mCalls++;
+        }
+        
+        public void stopScanning() {
+            mCalls++;
+        }
+        
+        public void set1DScanningEnabled(boolean enabled) {
+            mCalls++;
+        }
+        
+        public void set2DScanningEnabled(boolean enabled) {
+            mCalls++;
+        }
+        
+        public void setEan13AndUpc12Enabled(boolean enabled) {
+            mCalls++;
+        }
+        
+        public void setEan8Enabled(boolean enabled) {
+            mCalls++;
+        }
+        
+        public void setUpceEnabled(boolean enabled) {
+            mCalls++;
+        }
+        
+        public void setCode39Enabled(boolean enabled) {
+            mCalls++;
+        }
+        
+        public void setCode128Enabled(boolean enabled) {
+            mCalls++;
+        }
+        
+        public void setItfEnabled(boolean enabled) {
+            mCalls++;
+        }
+        
+        public void setQrEnabled(boolean enabled) {
+            mCalls++;
+        }
+        
+        public void setDataMatrixEnabled(boolean enabled) {
+            mCalls++;
+        }
+        
+        public void setMsiPlesseyEnabled(boolean enabled) {
+            mCalls++;
+        }
+        
+        public void setMsiPlesseyChecksumType(int type) {
+            mCalls++;
+        }
+        
+        public void setInverseRecognitionEnabled(boolean enabled) {
+            mCalls++;
+        }
+        
+        public void setMicroDataMatrixEnabled(boolean enabled) {
+            mCalls++;
+        }
+        
+        public void force2dRecognition(boolean force) {
+            mCalls++;
+        }
+        
+        public void setScanningHotSpot(float x, float y) {
+            mCalls++;
+        }
+        
+        public void setScanningHotSpotHeight(float height) {
+            mCalls++;
+        }
+        
+        public void ignorePreviewAspectRatio() {
+            mCalls++;
+        }
+        
+        public void showSearchBar(boolean show) {
+            mCalls++;
+        }
+        
+        public void showTitleBar(boolean show) {
+            mCalls++;
+        }
+        
+        public void showToolBar(boolean show) {
+            mCalls++;
+        }
+        
+        public void setBeepEnabled(boolean enabled) {
+            mCalls++;
+        }
+        
+        public void setVibrateEnabled(boolean enabled) {
+            mCalls++;
+        }
+        
+        public void setTorchEnabled(boolean enabled) {
+            mCalls++;
+        }
+        
+        public void setTorchButtonPosition(float x, float y, int width, int height) {
+            mCalls++;
+        }
+        
+        public void setCameraSwitchVisibility(int visibility) {
+            mCalls++;
+        }
+        
+        public void setCameraSwitchButtonPosition(float x, float y, int width, int height) {
+            mCalls++;
+        }
+        
+        public void setTextForInitialScanScreenState(String text) {
+            mCalls++;
+        }
+        
+        public void setTextForBarcodePresenceDetected(String text) {
+            mCalls++;
+        }
+        
+        public void setTextForBarcodeDecodingInProgress(String text) {
+            mCalls++;
+        }
+        
+        public void setTitleMessage(String text) {
+            mCalls++;
+        }
+        
+        public void setLeftButtonCaption(String text) {
+            mCalls++;
+        }
+        
+        public void setLeftButtonCaptionWhenKeypadVisible(String text) {
+            mCalls++;
+        }
+        
+        public void setRightButtonCaption(String text) {
+            mCalls++;
+        }
+        
+        public void setRightButtonCaptionWhenKeypadVisible(String text) {
+            mCalls++;
+        }
+        
+        public void setSearchBarPlaceholderText(String text) {
+            mCalls++;
+        }
+        
+        public void setViewfinderDimension(float width, float height) {
+            mCalls++;
+        }
+        
+        public void setViewfinderDimension(float x, float y, float width, float height) {
+            mCalls++;
+        }
+        
+        public void drawViewfinderTextHook(boolean draw) {
+            mCalls++;
+        }
+        
+        public void addListener(ScanditSDKListener listener) {
+        }
+        
+        public void setViewfinderColor(float r, float g, float b) {
+            mCalls++;
+        }
+        
+        public void setViewfinderDecodedColor(float r, float g, float b) {
+            mCalls++;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+//
+//  Copyright 2010 Mirasense AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+//
+//
+
+package com.mirasense.scanditsdk.plugin;
+
+import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.CordovaInterface;
+import org.apache.cordova.CordovaPlugin;
+import org.apache.cordova.CordovaPreferences;
+import org.apache.cordova.PluginResult;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import android.app.Activity;
+import android.content.Intent;
+
+/**
+ * The work of the plugin around a single scan: the scan action up to the intent that opens the 
+ * scan screen, and onActivityResult up to the plugin result that is sent to Java Script. Cordova's
+ * thread pool and the UI thread run the work right away, the scan screen itself is not started.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ScanditSDKBenchmarks {
+    
+    private static final String RAW_ARGS = "[\"appKey\", {\"beep\": false, \"qr\": true, "
+            + "\"dataMatrix\": true, \"titleMessage\": \"Scan the shelf label\", \"gs1\": true}]";
+    private static final String BINARY_ARGS = "[\"appKey\", {\"beep\": false, \"gs1\": true, "
+            + "\"binaryResult\": true}]";
+    // GTIN, best before date, batch and net weight, as on a case of produce.
+    private static final String BARCODE = 
+            "]C10109506000134352172712311012AB" + Gs1Parser.GS + "3103001250";
+    private static final String SYMBOLOGY = "CODE128";
+    
+    private ScanditSDK mPlugin;
+    private ImmediateCordova mCordova;
+    private final ResultCallback mCallback = new ResultCallback();
+    private Map<Integer, String[]> mScreenResults;
+    private ScanSettings mSettings;
+    private ScanSettings mBinarySettings;
+    
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() throws ReflectiveOperationException, JSONException {
+        mCordova = new ImmediateCordova();
+        mPlugin = new ScanditSDK();
+        mPlugin.privateInitialize("ScanditSDK", mCordova, null, new CordovaPreferences());
+        // Where the scan screen leaves its result for onActivityResult.
+        Field results = ScanditSDKActivity.class.getDeclaredField("sResults");
+        results.setAccessible(true);
+        mScreenResults = (Map<Integer, String[]>) results.get(null);
+        mSettings = ScanSettings.forArgs(RAW_ARGS);
+        mBinarySettings = ScanSettings.forArgs(BINARY_ARGS);
+    }
+    
+    @TearDown
+    public void tearDown() {
+        mPlugin.onDestroy();
+    }
+    
+    /**
+     * The scan action up to the intent, followed by the scan screen being canceled, such that the
+     * next scan is not queued behind this one.
+     */
+    @Benchmark
+    public Intent launchScan() throws JSONException, InterruptedException {
+        mPlugin.execute(ScanditSDK.SCAN, RAW_ARGS, mCallback);
+        Intent intent = mCordova.mIntent;
+        mPlugin.onActivityResult(mCordova.mRequestCode, ScanditSDKActivity.CANCEL, null);
+        mCallback.take();
+        return intent;
+    }
+    
+    /**
+     * A whole scan: the scan action, the scan screen finishing with a code and the result being
+     * created on the result executor and sent.
+     */
+    @Benchmark
+    public PluginResult scanWithResult() throws JSONException, InterruptedException {
+        mPlugin.execute(ScanditSDK.SCAN, RAW_ARGS, mCallback);
+        int requestCode = mCordova.mRequestCode;
+        mScreenResults.put(requestCode, new String[] { BARCODE, SYMBOLOGY });
+        mPlugin.onActivityResult(requestCode, ScanditSDKActivity.SCAN, null);
+        return mCallback.take();
+    }
+    
+    @Benchmark
+    public JSONArray createResult() {
+        return mPlugin.createResult(BARCODE, SYMBOLOGY, mSettings);
+    }
+    
+    @Benchmark
+    public PluginResult createPluginResult() {
+        return mPlugin.createPluginResult(BARCODE, SYMBOLOGY, mSettings);
+    }
+    
+    @Benchmark
+    public PluginResult createBinaryPluginResult() {
+        return mPlugin.createPluginResult(BARCODE, SYMBOLOGY, mBinarySettings);
+    }
+    
+    /**
+     * Hands the results of a scan over to the benchmark thread, also those sent from the result
+     * executor.
+     */
+    private static final class ResultCallback extends CallbackContext {
+        
+        private final BlockingQueue<PluginResult> mResults = 
+                new ArrayBlockingQueue<PluginResult>(1);
+        
+        @Override
+        public void sendPluginResult(PluginResult pluginResult) {
+            mResults.add(pluginResult);
+        }
+        
+        PluginResult take() throws InterruptedException {
+            return mResults.take();
+        }
+    }
+    
+    /**
+     * Runs background and UI thread work right away and records the intent of the scan screen
+     * instead of starting it.
+     */
+    private static final class ImmediateCordova extends AbstractExecutorService 
+            implements CordovaInterface {
+        
+        private final Activity mActivity = new Activity();
+        Intent mIntent;
+        int mRequestCode;
+        
+        public void startActivityForResult(CordovaPlugin command, Intent intent, int requestCode) {
+            mIntent = intent;
+            mRequestCode = requestCode;
+        }
+        
+        public Activity getActivity() {
+            return mActivity;
+        }
+        
+        public ExecutorService getThreadPool() {
+            return this;
+        }
+        
+        public void execute(Runnable command) {
+            command.run();
+        }
+        
+        public void shutdown() {
+        }
+        
+        public List<Runnable> shutdownNow() {
+            return Collections.emptyList();
+        }
+        
+        public boolean isShutdown() {
+            return false;
+        }
+        
+        public boolean isTerminated() {
+            return false;
+        }
+        
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return false;
+        }
+    }
+}
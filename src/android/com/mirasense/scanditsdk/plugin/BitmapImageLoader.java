@@ -0,0 +1,78 @@
+//
+//  Copyright 2010 Mirasense AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+//
+//
+
+package com.mirasense.scanditsdk.plugin;
+
+import java.io.File;
+import java.io.IOException;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+/**
+ * Loads image files through BitmapFactory, downsampled while decoding such that the full size 
+ * image is never held in memory, and converts them to grayscale one row at a time.
+ */
+final class BitmapImageLoader implements ImageBatchScanner.ImageLoader {
+    
+    public byte[] load(File file, int maxPixels, byte[] buffer, int[] size) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getPath(), options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            throw new IOException("Not an image: " + file);
+        }
+        
+        int sampleSize = 1;
+        while ((long) (options.outWidth / sampleSize) * (options.outHeight / sampleSize) > maxPixels) {
+            sampleSize *= 2;
+        }
+        options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        Bitmap bitmap = BitmapFactory.decodeFile(file.getPath(), options);
+        if (bitmap == null) {
+            throw new IOException("Could not decode " + file);
+        }
+        
+        try {
+            int width = bitmap.getWidth();
+            int height = bitmap.getHeight();
+            if (buffer == null || buffer.length < width * height) {
+                buffer = new byte[width * height];
+            }
+            int[] row = new int[width];
+            for (int y = 0; y < height; y++) {
+                bitmap.getPixels(row, 0, width, 0, y, width, 1);
+                int offset = y * width;
+                for (int x = 0; x < width; x++) {
+                    int pixel = row[x];
+                    int r = (pixel >> 16) & 0xff;
+                    int g = (pixel >> 8) & 0xff;
+                    int b = pixel & 0xff;
+                    // ITU-R BT.601 luma with integer weights summing to 256.
+                    buffer[offset + x] = (byte) ((77 * r + 150 * g + 29 * b) >> 8);
+                }
+            }
+            size[0] = width;
+            size[1] = height;
+            return buffer;
+        } finally {
+            bitmap.recycle();
+        }
+    }
+}
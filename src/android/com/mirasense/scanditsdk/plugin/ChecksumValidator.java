@@ -0,0 +1,218 @@
+//
+//  Copyright 2010 Mirasense AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+//
+//
+
+package com.mirasense.scanditsdk.plugin;
+
+import com.mirasense.scanditsdk.interfaces.ScanditSDK;
+
+/**
+ * Verifies the check digits of 1D codes before they are reported, such that misreads are dropped
+ * without a round trip through Java Script.
+ * 
+ * Covers EAN-13/UPC-A, EAN-8, UPC-E, ITF-14 (ITF codes of 14 digits) and MSI Plessey with the 
+ * configured checksum type. Codes of other symbologies are always valid. The barcode string is 
+ * read in place, no objects are allocated.
+ */
+final class ChecksumValidator {
+    
+    private ChecksumValidator() {
+    }
+    
+    /**
+     * Returns false if the code belongs to a covered symbology and its check digits are wrong.
+     * 
+     * @param msiPlesseyChecksum One of the ScanditSDK.CHECKSUM_* constants.
+     */
+    static boolean isValid(String barcode, String symbology, int msiPlesseyChecksum) {
+        if (symbology == null) {
+            return true;
+        }
+        if (is(symbology, "EAN13") || is(symbology, "UPC12") || is(symbology, "UPCA")) {
+            return (barcode.length() == 13 || barcode.length() == 12) && isValidGtin(barcode);
+        } else if (is(symbology, "EAN8")) {
+            return barcode.length() == 8 && isValidGtin(barcode);
+        } else if (is(symbology, "UPCE")) {
+            return isValidUpce(barcode);
+        } else if (is(symbology, "ITF")) {
+            // Only ITF-14 carries a check digit, other lengths are accepted as they are.
+            return barcode.length() != 14 || isValidGtin(barcode);
+        } else if (is(symbology, "MSI") || is(symbology, "MSIPLESSEY")) {
+            return isValidMsiPlessey(barcode, msiPlesseyChecksum);
+        }
+        return true;
+    }
+    
+    private static boolean is(String symbology, String name) {
+        return symbology.length() == name.length() 
+                && symbology.regionMatches(true, 0, name, 0, name.length());
+    }
+    
+    /**
+     * Verifies the GS1 modulo 10 check digit in the last position: weights 3 and 1 alternating
+     * from the rightmost data digit.
+     */
+    static boolean isValidGtin(String code) {
+        int last = code.length() - 1;
+        int sum = 0;
+        for (int i = last - 1, weight = 3; i >= 0; i--, weight = 4 - weight) {
+            int digit = digit(code, i);
+            if (digit < 0) {
+                return false;
+            }
+            sum += digit * weight;
+        }
+        return digit(code, last) == (10 - sum % 10) % 10;
+    }
+    
+    /**
+     * Verifies an UPC-E code of 8 digits (number system, 6 data digits, check digit) by expanding 
+     * it to UPC-A. Codes of 6 digits carry no number system and check digit and are accepted.
+     */
+    static boolean isValidUpce(String code) {
+        if (code.length() == 6) {
+            return digitsOnly(code);
+        }
+        if (code.length() != 8 || !digitsOnly(code)) {
+            return false;
+        }
+        int numberSystem = digit(code, 0);
+        if (numberSystem > 1) {
+            return false;
+        }
+        int sum = 0;
+        for (int i = 0; i < 11; i++) {
+            sum += upcaDigit(code, i) * (i % 2 == 0 ? 3 : 1);
+        }
+        return digit(code, 7) == (10 - sum % 10) % 10;
+    }
+    
+    /**
+     * Returns the digit at the position of the UPC-A code (without check digit) that the UPC-E 
+     * code expands to.
+     */
+    private static int upcaDigit(String upce, int position) {
+        if (position == 0) {
+            return digit(upce, 0);
+        }
+        int d1 = digit(upce, 1);
+        int d2 = digit(upce, 2);
+        int d3 = digit(upce, 3);
+        int d4 = digit(upce, 4);
+        int d5 = digit(upce, 5);
+        int d6 = digit(upce, 6);
+        // Manufacturer code in positions 1-5, product code in positions 6-10.
+        switch (d6) {
+            case 0:
+            case 1:
+            case 2:
+                return pick(position, d1, d2, d6, 0, 0, 0, 0, d3, d4, d5);
+            case 3:
+                return pick(position, d1, d2, d3, 0, 0, 0, 0, 0, d4, d5);
+            case 4:
+                return pick(position, d1, d2, d3, d4, 0, 0, 0, 0, 0, d5);
+            default:
+                return pick(position, d1, d2, d3, d4, d5, 0, 0, 0, 0, d6);
+        }
+    }
+    
+    private static int pick(int position, int p1, int p2, int p3, int p4, int p5, int p6, int p7,
+                            int p8, int p9, int p10) {
+        switch (position) {
+            case 1: return p1;
+            case 2: return p2;
+            case 3: return p3;
+            case 4: return p4;
+            case 5: return p5;
+            case 6: return p6;
+            case 7: return p7;
+            case 8: return p8;
+            case 9: return p9;
+            default: return p10;
+        }
+    }
+    
+    static boolean isValidMsiPlessey(String code, int checksum) {
+        if (!digitsOnly(code)) {
+            return false;
+        }
+        int length = code.length();
+        switch (checksum) {
+            case ScanditSDK.CHECKSUM_NONE:
+                return true;
+            case ScanditSDK.CHECKSUM_MOD_11:
+                return length >= 2 && msiMod11(code, length - 1) == digit(code, length - 1);
+            case ScanditSDK.CHECKSUM_MOD_1010:
+                return length >= 3 && msiMod10(code, length - 2) == digit(code, length - 2)
+                        && msiMod10(code, length - 1) == digit(code, length - 1);
+            case ScanditSDK.CHECKSUM_MOD_1110:
+                return length >= 3 && msiMod11(code, length - 2) == digit(code, length - 2)
+                        && msiMod10(code, length - 1) == digit(code, length - 1);
+            default:
+                return length >= 2 && msiMod10(code, length - 1) == digit(code, length - 1);
+        }
+    }
+    
+    /**
+     * Computes the MSI modulo 10 (Luhn) check digit over the first end digits: every second digit 
+     * starting with the rightmost one is doubled and the digits of all products are summed.
+     */
+    private static int msiMod10(String code, int end) {
+        int sum = 0;
+        boolean doubled = true;
+        for (int i = end - 1; i >= 0; i--) {
+            int value = digit(code, i);
+            if (doubled) {
+                value *= 2;
+                if (value > 9) {
+                    value -= 9;
+                }
+            }
+            sum += value;
+            doubled = !doubled;
+        }
+        return (10 - sum % 10) % 10;
+    }
+    
+    /**
+     * Computes the MSI modulo 11 check digit (IBM weights 2 to 7 from the right) over the first end
+     * digits, or -1 if the result would be 10 which has no single digit representation.
+     */
+    private static int msiMod11(String code, int end) {
+        int sum = 0;
+        int weight = 2;
+        for (int i = end - 1; i >= 0; i--) {
+            sum += digit(code, i) * weight;
+            weight = weight == 7 ? 2 : weight + 1;
+        }
+        int check = (11 - sum % 11) % 11;
+        return check == 10 ? -1 : check;
+    }
+    
+    private static boolean digitsOnly(String code) {
+        for (int i = 0; i < code.length(); i++) {
+            if (digit(code, i) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static int digit(String code, int index) {
+        char c = code.charAt(index);
+        return c >= '0' && c <= '9' ? c - '0' : -1;
+    }
+}
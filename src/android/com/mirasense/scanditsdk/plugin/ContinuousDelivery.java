@@ -0,0 +1,136 @@
+//
+//  Copyright 2010 Mirasense AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+//
+//
+
+package com.mirasense.scanditsdk.plugin;
+
+import java.util.concurrent.Executor;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+import org.apache.cordova.PluginResult.Status;
+
+import android.os.SystemClock;
+
+/**
+ * Delivers the results of a scan that reports more than one code to the same callback, that is a
+ * scan in continuous mode or through the embedded picker.
+ * 
+ * Every code passes checksum validation, the duplicate filter and batching on the given executor, 
+ * which has to run its tasks one after the other. This keeps the camera and UI threads free and 
+ * the results in order. Finishing the delivery is queued behind the codes still being processed.
+ */
+final class ContinuousDelivery {
+    
+    private final ScanditSDK mPlugin;
+    private final CallbackContext mCallbackContext;
+    private final ScanSettings mSettings;
+    private final ScanMetrics.Timing mTiming;
+    private final Executor mExecutor;
+    private final DuplicateFilter mDuplicateFilter;
+    private final ResultBatcher mResultBatcher;
+    // Only accessed on the executor.
+    private boolean mFinished;
+    
+    
+    ContinuousDelivery(ScanditSDK plugin, CallbackContext callbackContext, ScanSettings settings,
+                       ScanMetrics.Timing timing, Executor executor) {
+        mPlugin = plugin;
+        mCallbackContext = callbackContext;
+        mSettings = settings;
+        mTiming = timing;
+        mExecutor = executor;
+        
+        if (settings.getDuplicateFilterWindow() > 0) {
+            mDuplicateFilter = new DuplicateFilter(settings.getDuplicateFilterWindow(), 
+                    settings.getDuplicateFilterCacheSize());
+        } else {
+            mDuplicateFilter = null;
+        }
+        if (settings.getBatchSize() > 1 && !settings.get(ScanSettings.BINARY_RESULT)) {
+            mResultBatcher = new ResultBatcher(callbackContext, settings.getBatchSize(), 
+                    settings.getBatchInterval(), timing);
+        } else {
+            mResultBatcher = null;
+        }
+    }
+    
+    /**
+     * Queues a recognized code for delivery.
+     */
+    void deliver(final String barcode, final String symbology) {
+        mExecutor.execute(new Runnable() {
+            public void run() {
+                process(barcode, symbology);
+            }
+        });
+    }
+    
+    /**
+     * Completes the callback once all queued codes have been delivered.
+     * 
+     * @param error The error the failure callback is called with, or null to release the callback 
+     *        without calling it again.
+     */
+    void finish(final String error) {
+        mExecutor.execute(new Runnable() {
+            public void run() {
+                if (mFinished) {
+                    return;
+                }
+                mFinished = true;
+                if (mResultBatcher != null) {
+                    mResultBatcher.flush();
+                }
+                if (error != null) {
+                    mCallbackContext.error(error);
+                } else {
+                    mCallbackContext.sendPluginResult(new PluginResult(Status.NO_RESULT));
+                }
+            }
+        });
+    }
+    
+    private void process(String barcode, String symbology) {
+        if (mFinished) {
+            return;
+        }
+        if (mSettings.get(ScanSettings.VALIDATE_CHECKSUMS) && !ChecksumValidator.isValid(
+                barcode, symbology, mSettings.getMsiPlesseyChecksum())) {
+            return;
+        }
+        if (mDuplicateFilter != null
+                && !mDuplicateFilter.accept(barcode, symbology, SystemClock.elapsedRealtime())) {
+            return;
+        }
+        mPlugin.recordDecode(symbology);
+        if (mSettings.get(ScanSettings.JOURNAL)) {
+            mPlugin.getJournal().append(barcode, symbology);
+        }
+        if (mSettings.get(ScanSettings.UPLOAD)) {
+            mPlugin.upload(barcode, symbology);
+        }
+        
+        if (mResultBatcher != null) {
+            mResultBatcher.add(mPlugin.createResult(barcode, symbology, mSettings));
+            return;
+        }
+        PluginResult result = mPlugin.createPluginResult(barcode, symbology, mSettings);
+        result.setKeepCallback(true);
+        mCallbackContext.sendPluginResult(result);
+        ScanMetrics.mark(mTiming, ScanMetrics.DELIVERED);
+    }
+}
@@ -0,0 +1,62 @@
+//
+//  Copyright 2010 Mirasense AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+//
+//
+
+package com.mirasense.scanditsdk.plugin;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Suppresses codes that were already seen within a time window, such that a code held in front of
+ * the camera in continuous mode is only reported once.
+ * 
+ * Codes are identified by their data and symbology. Every sighting of a code restarts its window.
+ * At most a fixed number of codes is remembered, the least recently seen ones are forgotten first.
+ */
+final class DuplicateFilter {
+    
+    private final long mWindowMillis;
+    private final Map<String, Long> mLastSeen;
+    
+    
+    DuplicateFilter(long windowMillis, final int capacity) {
+        mWindowMillis = windowMillis;
+        mLastSeen = new LinkedHashMap<String, Long>(Math.min(capacity, 64), 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+            
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+    
+    /**
+     * Records a sighting of the code and returns whether it is new, that is whether it was not seen 
+     * within the window before.
+     * 
+     * @param now Current time of a monotonic clock in milliseconds.
+     */
+    synchronized boolean accept(String barcode, String symbology, long now) {
+        Long lastSeen = mLastSeen.put(symbology + '\n' + barcode, now);
+        return lastSeen == null || now - lastSeen.longValue() > mWindowMillis;
+    }
+    
+    synchronized void clear() {
+        mLastSeen.clear();
+    }
+}
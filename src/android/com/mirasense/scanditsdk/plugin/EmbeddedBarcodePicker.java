@@ -0,0 +1,267 @@
+//
+//  Copyright 2010 Mirasense AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+//
+//
+
+package com.mirasense.scanditsdk.plugin;
+
+import android.app.Activity;
+import android.os.SystemClock;
+import android.view.Gravity;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import com.mirasense.scanditsdk.ScanditSDKBarcodePicker;
+import com.mirasense.scanditsdk.interfaces.ScanditSDKListener;
+
+/**
+ * Shows the barcode picker in a rectangle on top of the Cordova web view instead of in a separate
+ * activity, such that scanning can be started and stopped without activity transitions.
+ * 
+ * The picker is obtained through PreparedBarcodePicker and returned to it when hidden, which makes
+ * showing it again cheap. All methods have to be called on the UI thread.
+ */
+final class EmbeddedBarcodePicker implements ScanditSDKListener {
+    
+    /**
+     * Receives the events of the embedded picker.
+     */
+    interface Listener extends ScanditSDKActivity.ContinuousScanListener {
+        
+        /**
+         * Called when the user canceled scanning through the picker's cancel button. The picker 
+         * has already been hidden.
+         */
+        public void didCancelEmbedded();
+    }
+    
+    private final Activity mActivity;
+    private final Listener mListener;
+    private ScanditSDKBarcodePicker mPicker;
+    private ScanSettings mSettings;
+    private boolean mPaused;
+    private HotSpotTuner mHotSpotTuner;
+    private SymbologyProfile mSymbologyProfile;
+    private IdleDutyCycler mIdleDutyCycler;
+    private ScanMetrics.Timing mTiming;
+    
+    
+    EmbeddedBarcodePicker(Activity activity, Listener listener) {
+        mActivity = activity;
+        mListener = listener;
+    }
+    
+    /**
+     * Shows the picker with the given settings and starts scanning. If the picker is already shown
+     * the settings are applied to it.
+     * 
+     * @param frame x/y/width/height in device independent pixels relative to the web view's 
+     *        parent, or null to cover it completely.
+     * @param timing The timing of the show action the settings came with.
+     * @return False if the picker is used by the scan screen or the device can not embed it.
+     */
+    boolean show(ScanSettings settings, float[] frame, ScanMetrics.Timing timing) {
+        mTiming = timing;
+        if (mPicker == null) {
+            boolean preferFrontCamera = settings.get(ScanSettings.PREFER_FRONT_CAMERA);
+            boolean wasPrepared = PreparedBarcodePicker.isPrepared();
+            if (!PreparedBarcodePicker.prepare(mActivity, settings.getAppKey(), preferFrontCamera)) {
+                return false;
+            }
+            mPicker = PreparedBarcodePicker.acquire(settings.getAppKey(), preferFrontCamera, this);
+            if (mPicker == null) {
+                return false;
+            }
+            ScanMetrics.mark(mTiming, wasPrepared 
+                    ? ScanMetrics.PICKER_REUSED : ScanMetrics.PICKER_CONSTRUCTED);
+            mActivity.addContentView(mPicker, layoutParams(frame));
+        } else {
+            mPicker.setLayoutParams(layoutParams(frame));
+        }
+        
+        PreparedBarcodePicker.apply(mPicker, settings, null);
+        mSettings = settings;
+        stopTuning();
+        mHotSpotTuner = settings.createHotSpotTuner(mActivity);
+        if (mHotSpotTuner != null) {
+            mPicker.setScanningHotSpotHeight(mHotSpotTuner.getHeight());
+        }
+        mSymbologyProfile = settings.createSymbologyProfile(mActivity);
+        if (mSymbologyProfile != null) {
+            mSymbologyProfile.apply(mPicker, settings);
+        }
+        mIdleDutyCycler = settings.createIdleDutyCycler(mPicker);
+        if (!mPaused) {
+            mPicker.startScanning();
+            ScanMetrics.mark(mTiming, ScanMetrics.SCANNING_STARTED);
+            if (mHotSpotTuner != null) {
+                mHotSpotTuner.scanningStarted(SystemClock.elapsedRealtime());
+            }
+            if (mSymbologyProfile != null) {
+                mSymbologyProfile.scanningStarted();
+            }
+            if (mIdleDutyCycler != null) {
+                mIdleDutyCycler.scanningStarted();
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Stops scanning and removes the picker from the screen.
+     */
+    void hide() {
+        stopTuning();
+        if (mPicker != null) {
+            // Recycling stops scanning and detaches the view.
+            PreparedBarcodePicker.recycle(this);
+            mPicker = null;
+            mSettings = null;
+        }
+    }
+    
+    /**
+     * Moves the picker to a new rectangle, see show(ScanSettings, float[]).
+     */
+    void resize(float[] frame) {
+        if (mPicker != null) {
+            mPicker.setLayoutParams(layoutParams(frame));
+        }
+    }
+    
+    /**
+     * Applies the given options to the shown picker, calling only the setters of options that
+     * changed. Returns false if the picker is not shown.
+     * 
+     * @throws JSONException If an option has an illegal value.
+     */
+    boolean updateSettings(JSONObject changes) throws JSONException {
+        if (mPicker == null) {
+            return false;
+        }
+        ScanSettings settings = mSettings.merge(changes);
+        PreparedBarcodePicker.apply(mPicker, settings, mSettings);
+        mSettings = settings;
+        if (mSymbologyProfile != null) {
+            mSymbologyProfile.settingsChanged(settings);
+        }
+        return true;
+    }
+    
+    boolean isShown() {
+        return mPicker != null;
+    }
+    
+    /**
+     * Frees the camera while the Cordova activity is in the background.
+     */
+    void onPause() {
+        mPaused = true;
+        if (mIdleDutyCycler != null) {
+            mIdleDutyCycler.scanningStopped();
+        }
+        if (mPicker != null) {
+            mPicker.stopScanning();
+        }
+        if (mHotSpotTuner != null) {
+            mHotSpotTuner.scanningStopped();
+        }
+        if (mSymbologyProfile != null) {
+            mSymbologyProfile.scanningStopped();
+        }
+    }
+    
+    void onResume() {
+        mPaused = false;
+        if (mPicker != null) {
+            mPicker.startScanning();
+        }
+        if (mHotSpotTuner != null) {
+            mHotSpotTuner.scanningStarted(SystemClock.elapsedRealtime());
+        }
+        if (mSymbologyProfile != null) {
+            mSymbologyProfile.scanningStarted();
+        }
+        if (mIdleDutyCycler != null) {
+            mIdleDutyCycler.scanningStarted();
+        }
+    }
+    
+    /**
+     * Ends the adaptive options of the current session, saving what they learned.
+     */
+    private void stopTuning() {
+        if (mHotSpotTuner != null) {
+            mHotSpotTuner.scanningStopped();
+            mHotSpotTuner = null;
+        }
+        if (mSymbologyProfile != null) {
+            mSymbologyProfile.scanningStopped();
+            mSymbologyProfile = null;
+        }
+        if (mIdleDutyCycler != null) {
+            mIdleDutyCycler.scanningStopped();
+            mIdleDutyCycler = null;
+        }
+    }
+    
+    private FrameLayout.LayoutParams layoutParams(float[] frame) {
+        if (frame == null) {
+            return new FrameLayout.LayoutParams(
+                    ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT);
+        }
+        float density = mActivity.getResources().getDisplayMetrics().density;
+        FrameLayout.LayoutParams params = new FrameLayout.LayoutParams(
+                Math.round(frame[2] * density), Math.round(frame[3] * density));
+        params.gravity = Gravity.TOP | Gravity.LEFT;
+        params.leftMargin = Math.round(frame[0] * density);
+        params.topMargin = Math.round(frame[1] * density);
+        return params;
+    }
+    
+    public void didCancel() {
+        hide();
+        mListener.didCancelEmbedded();
+    }
+    
+    public void didScanBarcode(String barcode, String symbology) {
+        if (mIdleDutyCycler != null) {
+            mIdleDutyCycler.decoded();
+        }
+        ScanMetrics.mark(mTiming, ScanMetrics.FIRST_DECODE);
+        if (mHotSpotTuner != null && mHotSpotTuner.decoded(barcode.trim(), 
+                SystemClock.elapsedRealtime())) {
+            mPicker.setScanningHotSpotHeight(mHotSpotTuner.getHeight());
+        }
+        mListener.didScanBarcode(mSettings.reportedBarcode(barcode), symbology);
+    }
+    
+    /**
+     * Lets the adaptive options learn from a code that passed checksum validation and the 
+     * duplicate filter.
+     */
+    void recordDecode(String symbology) {
+        if (mSymbologyProfile != null) {
+            mSymbologyProfile.decoded(symbology);
+        }
+    }
+    
+    public void didManualSearch(String entry) {
+        mListener.didScanBarcode(entry.trim(), "UNKNOWN");
+    }
+}
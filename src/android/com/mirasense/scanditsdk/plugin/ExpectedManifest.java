@@ -0,0 +1,193 @@
+//
+//  Copyright 2010 Mirasense AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+//
+//
+
+package com.mirasense.scanditsdk.plugin;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * The codes expected in a receiving workflow, matched against every scanned code.
+ * 
+ * The codes are kept as longs in an open-addressing hash table with linear probing instead of as
+ * strings, which keeps a manifest of 100k codes at a few megabytes and a lookup at a probe or 
+ * two. Numeric codes of up to 17 digits are packed exactly together with their length, such that
+ * leading zeros are significant. Other codes are stored as a 63-bit hash, which makes a false 
+ * match vanishingly unlikely. An optional Bloom filter answers most lookups of unexpected codes 
+ * without touching the table.
+ */
+final class ExpectedManifest {
+    
+    static final String MATCHED = "matched";
+    static final String DUPLICATE = "duplicate";
+    static final String UNEXPECTED = "unexpected";
+    
+    private static final int MAX_PACKED_DIGITS = 17;
+    private static final int BLOOM_BITS_PER_CODE = 10;
+    private static final int BLOOM_HASHES = 7;
+    
+    private final long[] mKeys;
+    private final long[] mMatched;
+    private final long[] mBloom;
+    private final int mMask;
+    private int mSize;
+    private int mMatchedCount;
+    private int mUnexpectedCount;
+    
+    
+    /**
+     * @param capacity The number of codes that will be added.
+     */
+    ExpectedManifest(int capacity, boolean bloomFilter) {
+        // Keep the table at most half full.
+        int slots = Integer.highestOneBit(Math.max(capacity, 2) * 2 - 1) * 2;
+        mKeys = new long[slots];
+        mMatched = new long[(slots + 63) / 64];
+        mMask = slots - 1;
+        mBloom = bloomFilter ? new long[(Math.max(capacity, 1) * BLOOM_BITS_PER_CODE + 63) / 64] 
+                : null;
+    }
+    
+    /**
+     * Adds an expected code. Codes that were already added are ignored.
+     */
+    synchronized void add(String code) {
+        long key = key(code);
+        int slot = slot(key);
+        while (mKeys[slot] != 0) {
+            if (mKeys[slot] == key) {
+                return;
+            }
+            slot = (slot + 1) & mMask;
+        }
+        if (mSize == mKeys.length / 2) {
+            throw new IllegalStateException("Manifest is full");
+        }
+        mKeys[slot] = key;
+        mSize++;
+        if (mBloom != null) {
+            long hash = mix(key);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            int bits = mBloom.length * 64;
+            for (int i = 0; i < BLOOM_HASHES; i++) {
+                int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % bits;
+                mBloom[bit >>> 6] |= 1L << bit;
+            }
+        }
+    }
+    
+    /**
+     * Matches a scanned code and returns MATCHED if it was expected and not scanned before, 
+     * DUPLICATE if it was already matched and UNEXPECTED otherwise.
+     */
+    synchronized String match(String code) {
+        long key = key(code);
+        if (mBloom != null && !mightContain(key)) {
+            mUnexpectedCount++;
+            return UNEXPECTED;
+        }
+        int slot = slot(key);
+        while (mKeys[slot] != 0) {
+            if (mKeys[slot] == key) {
+                long bit = 1L << slot;
+                if ((mMatched[slot >>> 6] & bit) != 0) {
+                    return DUPLICATE;
+                }
+                mMatched[slot >>> 6] |= bit;
+                mMatchedCount++;
+                return MATCHED;
+            }
+            slot = (slot + 1) & mMask;
+        }
+        mUnexpectedCount++;
+        return UNEXPECTED;
+    }
+    
+    /**
+     * Returns the counts as {"size", "matched", "unexpected", "remaining", "complete"}.
+     */
+    synchronized JSONObject toJSON() throws JSONException {
+        JSONObject status = new JSONObject();
+        status.put("size", mSize);
+        status.put("matched", mMatchedCount);
+        status.put("unexpected", mUnexpectedCount);
+        status.put("remaining", mSize - mMatchedCount);
+        status.put("complete", mMatchedCount == mSize);
+        return status;
+    }
+    
+    private boolean mightContain(long key) {
+        long hash = mix(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        int bits = mBloom.length * 64;
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % bits;
+            if ((mBloom[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private int slot(long key) {
+        return (int) mix(key) & mMask;
+    }
+    
+    /**
+     * Returns the non-zero key of a code: digits and length packed for short numeric codes, a
+     * hash with the sign bit set for all others.
+     */
+    static long key(String code) {
+        int length = code.length();
+        if (length > 0 && length <= MAX_PACKED_DIGITS) {
+            long value = 0;
+            int i = 0;
+            for (; i < length; i++) {
+                char c = code.charAt(i);
+                if (c < '0' || c > '9') {
+                    break;
+                }
+                value = value * 10 + (c - '0');
+            }
+            if (i == length) {
+                // 10^17 fits into 57 bits, the length goes above.
+                return ((long) length << 57) | value;
+            }
+        }
+        // FNV-1a.
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < length; i++) {
+            hash ^= code.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash | Long.MIN_VALUE;
+    }
+    
+    /**
+     * Spreads the bits of the key (the finalizer of MurmurHash3).
+     */
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+}
@@ -0,0 +1,397 @@
+//
+//  Copyright 2010 Mirasense AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+//
+//
+
+package com.mirasense.scanditsdk.plugin;
+
+import java.util.Calendar;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Splits GS1-128, GS1 DataMatrix and GS1 QR codes into their application identifiers (AIs), such
+ * that Java Script receives the fields instead of matching the raw string with expressions.
+ * 
+ * The AIs are described by a table of ranges with the format of their data: numeric, 
+ * alphanumeric, a YYMMDD date or a number whose decimal places are given by the last digit of the
+ * AI. The length of an AI follows from its first two digits. Data of fixed length is cut off at 
+ * that length, data of variable length runs up to the next FNC1, which the picker reports as the 
+ * GS character, or the end of the code. Only codes marked as GS1 are parsed, by the symbology 
+ * identifier of GS1-128 ("]C1"), GS1 DataMatrix ("]d2") or GS1 QR ("]Q3"), or by a leading FNC1.
+ * Other codes are not, as their digits would happen to read as AIs.
+ * 
+ * A parse allocates the result object and the strings of the values only, the number of fields is
+ * bounded.
+ */
+final class Gs1Parser {
+    
+    static final char GS = '\u001d';
+    
+    private static final int MAX_FIELDS = 32;
+    private static final int MAX_LENGTH = 512;
+    
+    private static final int NUMERIC = 0;
+    private static final int ALPHANUMERIC = 1;
+    private static final int DATE = 2;
+    private static final int DECIMAL = 3;
+    
+    // First AI, last AI and format of a range. Formats are a type (N numeric, X alphanumeric, 
+    // D date, R decimal) followed by the fixed length or ".." and the maximum length.
+    private static final String[] TABLE = {
+        "00", "00", "N18",
+        "01", "02", "N14",
+        "10", "10", "X..20",
+        "11", "13", "D6",
+        "15", "17", "D6",
+        "20", "20", "N2",
+        "21", "22", "X..20",
+        "235", "235", "X..28",
+        "240", "241", "X..30",
+        "242", "242", "N..6",
+        "243", "243", "X..20",
+        "250", "251", "X..30",
+        "253", "253", "X..30",
+        "254", "254", "X..20",
+        "255", "255", "N..25",
+        "30", "30", "N..8",
+        "3100", "3699", "R6",
+        "37", "37", "N..8",
+        "3900", "3909", "R..15",
+        "3910", "3919", "N..18",
+        "3920", "3929", "R..15",
+        "3930", "3939", "N..18",
+        "3940", "3949", "N4",
+        "3950", "3959", "N6",
+        "400", "401", "X..30",
+        "402", "402", "N17",
+        "403", "403", "X..30",
+        "410", "417", "N13",
+        "420", "420", "X..20",
+        "421", "421", "X..12",
+        "422", "422", "N3",
+        "423", "423", "N..15",
+        "424", "424", "N3",
+        "425", "425", "N..15",
+        "426", "426", "N3",
+        "427", "427", "X..3",
+        "4300", "4321", "X..70",
+        "7001", "7001", "N13",
+        "7002", "7002", "X..30",
+        "7003", "7003", "N10",
+        "7004", "7004", "N..4",
+        "7005", "7005", "X..12",
+        "7006", "7006", "D6",
+        "7007", "7007", "N..12",
+        "7008", "7008", "X..3",
+        "7009", "7009", "X..10",
+        "7010", "7010", "X..2",
+        "7020", "7039", "X..30",
+        "7040", "7040", "X4",
+        "710", "715", "X..20",
+        "7230", "7239", "X..30",
+        "7240", "7240", "X..20",
+        "8001", "8001", "N14",
+        "8002", "8002", "X..20",
+        "8003", "8004", "X..30",
+        "8005", "8005", "N6",
+        "8006", "8006", "N18",
+        "8007", "8007", "X..34",
+        "8008", "8008", "N..12",
+        "8009", "8009", "X..50",
+        "8010", "8010", "X..30",
+        "8011", "8011", "N..12",
+        "8012", "8012", "X..20",
+        "8013", "8013", "X..25",
+        "8017", "8018", "N18",
+        "8019", "8019", "N..10",
+        "8020", "8020", "X..25",
+        "8026", "8026", "N18",
+        "8110", "8110", "X..70",
+        "8111", "8111", "N4",
+        "8112", "8112", "X..70",
+        "8200", "8200", "X..70",
+        "90", "90", "X..30",
+        "91", "99", "X..90",
+    };
+    
+    // The ranges sorted by the number of their first AI. The number of digits of an AI is 
+    // determined by its first two digits, so the numbers of AIs of different length do not 
+    // collide.
+    private static final int[] sFirst;
+    private static final int[] sLast;
+    private static final int[] sType;
+    private static final int[] sMinLength;
+    private static final int[] sMaxLength;
+    // Number of digits of the AIs by their first two digits, 0 for unknown AIs.
+    private static final int[] sAiLength = new int[100];
+    
+    static {
+        int count = TABLE.length / 3;
+        sFirst = new int[count];
+        sLast = new int[count];
+        sType = new int[count];
+        sMinLength = new int[count];
+        sMaxLength = new int[count];
+        for (int i = 0; i < count; i++) {
+            String first = TABLE[3 * i];
+            String format = TABLE[3 * i + 2];
+            int minLength;
+            int maxLength;
+            if (format.startsWith("..", 1)) {
+                minLength = 1;
+                maxLength = Integer.parseInt(format.substring(3));
+            } else {
+                minLength = maxLength = Integer.parseInt(format.substring(1));
+            }
+            String last = TABLE[3 * i + 1];
+            int lastPrefix = Integer.parseInt(last.substring(0, 2));
+            for (int prefix = Integer.parseInt(first.substring(0, 2)); prefix <= lastPrefix; 
+                    prefix++) {
+                sAiLength[prefix] = first.length();
+            }
+            
+            // The table is in the order of the AIs as strings, insert by their numbers.
+            int ai = Integer.parseInt(first);
+            int j = i;
+            for (; j > 0 && sFirst[j - 1] > ai; j--) {
+                sFirst[j] = sFirst[j - 1];
+                sLast[j] = sLast[j - 1];
+                sType[j] = sType[j - 1];
+                sMinLength[j] = sMinLength[j - 1];
+                sMaxLength[j] = sMaxLength[j - 1];
+            }
+            sFirst[j] = ai;
+            sLast[j] = Integer.parseInt(last);
+            sType[j] = "NXDR".indexOf(format.charAt(0));
+            sMinLength[j] = minLength;
+            sMaxLength[j] = maxLength;
+        }
+    }
+    
+    private static final int[] DAYS_IN_MONTH = { 31, 29, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31 };
+    private static final long[] POWERS_OF_TEN = { 1, 10, 100, 1000, 10000, 100000, 1000000, 
+            10000000, 100000000, 1000000000 };
+    
+    private static final int CURRENT_YEAR = Calendar.getInstance().get(Calendar.YEAR);
+    
+    
+    private Gs1Parser() {
+    }
+    
+    /**
+     * Returns the fields of a code as an object from AI to value, or null if the code is not of a
+     * GS1 symbology, not marked as GS1 or not a valid GS1 element string. Numeric and 
+     * alphanumeric data is returned as a string, dates as "YYYY-MM-DD" and decimal data such as 
+     * net weight (310n) as a number.
+     */
+    static JSONObject parse(String barcode, String symbology) {
+        if (symbology == null || !(is(symbology, "CODE128") || is(symbology, "DATAMATRIX") 
+                || is(symbology, "QR"))) {
+            return null;
+        }
+        return parse(barcode);
+    }
+    
+    /**
+     * Parses a code regardless of its symbology, see parse(String, String).
+     */
+    static JSONObject parse(String code) {
+        int length = code.length();
+        if (length > MAX_LENGTH) {
+            return null;
+        }
+        int pos;
+        if (code.startsWith("]C1") || code.startsWith("]d2") || code.startsWith("]Q3")) {
+            pos = 3;
+            if (pos < length && code.charAt(pos) == GS) {
+                pos++;
+            }
+        } else if (length > 0 && code.charAt(0) == GS) {
+            pos = 1;
+        } else {
+            return null;
+        }
+        if (pos == length) {
+            return null;
+        }
+        
+        JSONObject fields = new JSONObject();
+        try {
+            while (pos < length) {
+                if (fields.length() == MAX_FIELDS) {
+                    return null;
+                }
+                int prefix = readNumber(code, pos, 2);
+                if (prefix < 0 || sAiLength[prefix] == 0) {
+                    return null;
+                }
+                int aiLength = sAiLength[prefix];
+                int ai = readNumber(code, pos, aiLength);
+                int entry = find(ai);
+                if (entry < 0) {
+                    return null;
+                }
+                int start = pos + aiLength;
+                int end;
+                if (sMinLength[entry] == sMaxLength[entry]) {
+                    end = start + sMaxLength[entry];
+                    if (end > length) {
+                        return null;
+                    }
+                } else {
+                    end = code.indexOf(GS, start);
+                    if (end < 0) {
+                        end = length;
+                    }
+                    if (end - start < sMinLength[entry] || end - start > sMaxLength[entry]) {
+                        return null;
+                    }
+                }
+                
+                String key = code.substring(pos, start);
+                if (fields.has(key)) {
+                    return null;
+                }
+                Object value = value(code, start, end, sType[entry], ai % 10);
+                if (value == null) {
+                    return null;
+                }
+                fields.put(key, value);
+                
+                pos = end;
+                if (pos < length && code.charAt(pos) == GS) {
+                    pos++;
+                }
+            }
+        } catch (JSONException e) {
+            // Can not happen with string keys and finite values.
+            return null;
+        }
+        return fields;
+    }
+    
+    private static int find(int ai) {
+        int low = 0;
+        int high = sFirst.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (sFirst[mid] > ai) {
+                high = mid - 1;
+            } else if (sLast[mid] < ai) {
+                low = mid + 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+    
+    private static Object value(String code, int start, int end, int type, int decimals) {
+        if (type == ALPHANUMERIC) {
+            for (int i = start; i < end; i++) {
+                char c = code.charAt(i);
+                if (c < 0x20 || c > 0x7e) {
+                    return null;
+                }
+            }
+            return code.substring(start, end);
+        }
+        for (int i = start; i < end; i++) {
+            if (code.charAt(i) < '0' || code.charAt(i) > '9') {
+                return null;
+            }
+        }
+        if (type == DATE) {
+            return date(code, start);
+        } else if (type == DECIMAL) {
+            if (decimals > end - start) {
+                return null;
+            }
+            long digits = 0;
+            for (int i = start; i < end; i++) {
+                digits = digits * 10 + code.charAt(i) - '0';
+            }
+            return (double) digits / POWERS_OF_TEN[decimals];
+        }
+        return code.substring(start, end);
+    }
+    
+    /**
+     * Converts a YYMMDD date to "YYYY-MM-DD". The century is the one that puts the year closest to
+     * the current year, at most 49 years back and 50 ahead. A day of 00 stands for the last day of
+     * the month.
+     */
+    private static String date(String code, int start) {
+        int yy = readNumber(code, start, 2);
+        int month = readNumber(code, start + 2, 2);
+        int day = readNumber(code, start + 4, 2);
+        if (month < 1 || month > 12) {
+            return null;
+        }
+        int difference = yy - CURRENT_YEAR % 100;
+        int year = CURRENT_YEAR - CURRENT_YEAR % 100 + yy;
+        if (difference > 50) {
+            year -= 100;
+        } else if (difference < -49) {
+            year += 100;
+        }
+        boolean leap = year % 4 == 0 && (year % 100 != 0 || year % 400 == 0);
+        int days = month == 2 && !leap ? 28 : DAYS_IN_MONTH[month - 1];
+        if (day == 0) {
+            day = days;
+        } else if (day > days) {
+            return null;
+        }
+        
+        char[] chars = new char[10];
+        chars[0] = (char) ('0' + year / 1000);
+        chars[1] = (char) ('0' + year / 100 % 10);
+        chars[2] = (char) ('0' + year / 10 % 10);
+        chars[3] = (char) ('0' + year % 10);
+        chars[4] = '-';
+        chars[5] = (char) ('0' + month / 10);
+        chars[6] = (char) ('0' + month % 10);
+        chars[7] = '-';
+        chars[8] = (char) ('0' + day / 10);
+        chars[9] = (char) ('0' + day % 10);
+        return new String(chars);
+    }
+    
+    /**
+     * Reads a number of the given count of digits, or returns -1 if the code is too short or 
+     * contains other characters there.
+     */
+    private static int readNumber(String code, int start, int count) {
+        if (start + count > code.length()) {
+            return -1;
+        }
+        int number = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = code.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            number = number * 10 + c - '0';
+        }
+        return number;
+    }
+    
+    private static boolean is(String symbology, String name) {
+        return symbology.length() == name.length() 
+                && symbology.regionMatches(true, 0, name, 0, name.length());
+    }
+}
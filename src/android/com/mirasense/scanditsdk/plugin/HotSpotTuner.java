@@ -0,0 +1,133 @@
+//
+//  Copyright 2010 Mirasense AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+//
+//
+
+package com.mirasense.scanditsdk.plugin;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+
+/**
+ * Adapts the height of the scanning hot spot to the time it takes to decode a code.
+ * 
+ * A large hot spot makes codes easier to aim at, which shortens the time to decode, but forces the
+ * engine to lower the recognition quality to keep up. The tuner therefore looks for the smallest 
+ * height that meets the target latency: it grows the hot spot while the moving average of the time
+ * to decode is above the target and shrinks it while the average is well below.
+ * 
+ * The time to decode is measured from the start of scanning to the first code, and in continuous 
+ * mode from the last decode of the previous code to the next different one. A code that stays in 
+ * view and is decoded again is counted once. Longer waits than MAX_SAMPLE_MILLIS are the user not
+ * scanning and are not counted.
+ * 
+ * The height and the average are saved per device model, such that later sessions start tuned. A
+ * single scan contributes one sample, so the tuner learns across sessions.
+ */
+final class HotSpotTuner {
+    
+    private static final String PREFERENCES = "ScanditSDK";
+    private static final String KEY_HEIGHT = "hotSpotHeight.";
+    private static final String KEY_LATENCY = "hotSpotLatency.";
+    
+    private static final float STEP = 0.05f;
+    // Weight of a new sample in the moving average of the time to decode.
+    private static final float SMOOTHING = 0.3f;
+    private static final long MAX_SAMPLE_MILLIS = 10000;
+    
+    private final SharedPreferences mPreferences;
+    private final float mMinHeight;
+    private final float mMaxHeight;
+    private final long mTargetMillis;
+    private float mHeight;
+    // Negative while there is no sample yet.
+    private float mAverageMillis;
+    // Negative while scanning is stopped.
+    private long mReferenceTime = -1;
+    private String mLastCode;
+    
+    
+    HotSpotTuner(Context context, float minHeight, float maxHeight, long targetMillis) {
+        mPreferences = context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE);
+        mMinHeight = minHeight;
+        mMaxHeight = maxHeight;
+        mTargetMillis = targetMillis;
+        float saved = mPreferences.getFloat(KEY_HEIGHT + Build.MODEL, (minHeight + maxHeight) / 2);
+        mHeight = Math.max(minHeight, Math.min(maxHeight, saved));
+        mAverageMillis = mPreferences.getFloat(KEY_LATENCY + Build.MODEL, -1);
+    }
+    
+    float getHeight() {
+        return mHeight;
+    }
+    
+    /**
+     * Called when the picker starts scanning, the next code is measured from now.
+     * 
+     * @param now SystemClock.elapsedRealtime()
+     */
+    void scanningStarted(long now) {
+        mReferenceTime = now;
+        mLastCode = null;
+    }
+    
+    /**
+     * Called for every code the picker decodes, before it is validated or filtered. Returns true 
+     * if the hot spot height changed.
+     * 
+     * @param now SystemClock.elapsedRealtime()
+     */
+    boolean decoded(String barcode, long now) {
+        long latency = mReferenceTime < 0 ? -1 : now - mReferenceTime;
+        mReferenceTime = now;
+        if (barcode.equals(mLastCode)) {
+            return false;
+        }
+        mLastCode = barcode;
+        if (latency < 0 || latency > MAX_SAMPLE_MILLIS) {
+            return false;
+        }
+        mAverageMillis = mAverageMillis < 0 
+                ? latency : SMOOTHING * latency + (1 - SMOOTHING) * mAverageMillis;
+        
+        if (mAverageMillis > mTargetMillis * 1.2f) {
+            return setHeight(mHeight + STEP);
+        } else if (mAverageMillis < mTargetMillis * 0.6f) {
+            return setHeight(mHeight - STEP);
+        }
+        return false;
+    }
+    
+    /**
+     * Called when the picker stops scanning, saves the height and average reached.
+     */
+    void scanningStopped() {
+        mReferenceTime = -1;
+        mPreferences.edit()
+                .putFloat(KEY_HEIGHT + Build.MODEL, mHeight)
+                .putFloat(KEY_LATENCY + Build.MODEL, mAverageMillis)
+                .apply();
+    }
+    
+    private boolean setHeight(float height) {
+        height = Math.max(mMinHeight, Math.min(mMaxHeight, height));
+        if (height == mHeight) {
+            return false;
+        }
+        mHeight = height;
+        return true;
+    }
+}
@@ -0,0 +1,113 @@
+//
+//  Copyright 2010 Mirasense AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+//
+//
+
+package com.mirasense.scanditsdk.plugin;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.mirasense.scanditsdk.interfaces.ScanditSDK;
+
+/**
+ * Lowers the frame rate of a picker that has not decoded anything for a while, such that long 
+ * sessions do not heat up the device and get it throttled.
+ * 
+ * The picker of SDK 3.3.1 reports neither whether a code is in view, the barcode presence behind
+ * its overlay texts stays internal, nor lets the frame rate be changed. A decoded code therefore
+ * stands in for presence, and once idle scanning is stopped and started in turn according to the 
+ * duty cycle, which cuts the frames processed by the off share. Any code decoded, including ones
+ * that are later rejected or filtered as duplicates, ends the idle mode right away. All methods 
+ * have to be called on the UI thread.
+ */
+final class IdleDutyCycler {
+    
+    private final ScanditSDK mPicker;
+    private final long mIdleTimeout;
+    private final long mOnMillis;
+    private final long mOffMillis;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Runnable mEnterIdle = new Runnable() {
+        public void run() {
+            mIdle = true;
+            mIdleStart = System.nanoTime();
+            mToggle.run();
+        }
+    };
+    private final Runnable mToggle = new Runnable() {
+        public void run() {
+            if (mOff) {
+                mPicker.startScanning();
+                mOff = false;
+                mHandler.postDelayed(this, mOnMillis);
+            } else {
+                mPicker.stopScanning();
+                mOff = true;
+                mHandler.postDelayed(this, mOffMillis);
+            }
+        }
+    };
+    private boolean mIdle;
+    private boolean mOff;
+    private long mIdleStart;
+    
+    
+    IdleDutyCycler(ScanditSDK picker, long idleTimeout, long onMillis, long offMillis) {
+        mPicker = picker;
+        mIdleTimeout = idleTimeout;
+        mOnMillis = onMillis;
+        mOffMillis = offMillis;
+    }
+    
+    /**
+     * Called when the picker starts scanning, starts the idle timeout.
+     */
+    void scanningStarted() {
+        mHandler.removeCallbacks(mEnterIdle);
+        mHandler.postDelayed(mEnterIdle, mIdleTimeout);
+    }
+    
+    /**
+     * Called for every code the picker decodes, leaves the idle mode and restarts the idle 
+     * timeout. A code that was decoded just before the off share started scanning again.
+     */
+    void decoded() {
+        if (mOff) {
+            mPicker.startScanning();
+        }
+        leaveIdle();
+        scanningStarted();
+    }
+    
+    /**
+     * Called before the picker stops scanning, leaves the idle mode without starting the picker 
+     * again if it is in the off share.
+     */
+    void scanningStopped() {
+        mHandler.removeCallbacks(mEnterIdle);
+        leaveIdle();
+    }
+    
+    private void leaveIdle() {
+        if (!mIdle) {
+            return;
+        }
+        mHandler.removeCallbacks(mToggle);
+        mOff = false;
+        mIdle = false;
+        ScanMetrics.record(ScanMetrics.IDLE_PERIOD, System.nanoTime() - mIdleStart);
+    }
+}
@@ -0,0 +1,182 @@
+//
+//  Copyright 2010 Mirasense AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+//
+//
+
+package com.mirasense.scanditsdk.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decodes a list of image files in parallel and reports the result of every file as soon as it is
+ * known.
+ * 
+ * The number of workers is bounded by the number of cores and by the memory an image may take,
+ * and every worker reuses one luminance buffer, such that the memory used stays bounded no matter
+ * how many files are given. All scanners share one pool of at most one thread per core, whose 
+ * threads end when idle. Loading and decoding are behind interfaces such that the scanner itself
+ * does not depend on Android.
+ */
+final class ImageBatchScanner {
+    
+    /**
+     * Loads an image file as grayscale, downsampled to at most the given number of pixels.
+     */
+    interface ImageLoader {
+        
+        /**
+         * @param buffer Buffer to reuse if it is large enough, may be null.
+         * @return The luminance of the image, width and height are stored in size[0] and size[1].
+         */
+        byte[] load(File file, int maxPixels, byte[] buffer, int[] size) throws IOException;
+    }
+    
+    /**
+     * Receives the results, from the worker threads.
+     */
+    interface Listener {
+        
+        /**
+         * Called once per file with the decoded code, {barcode, symbology}, or null if the image
+         * contains no code. If the file could not be loaded, error is set. If this method throws,
+         * it is called once more for the file with the exception as the error.
+         */
+        public void didScanImage(String path, String[] result, String error);
+        
+        /**
+         * Called after the last file has been reported.
+         */
+        public void didFinish(int count);
+    }
+    
+    private static final ThreadPoolExecutor sExecutor = createExecutor();
+    
+    private final ImageLoader mLoader;
+    private final StillImageDecoder mDecoder;
+    private final int mMaxPixels;
+    private final int mWorkers;
+    
+    
+    ImageBatchScanner(ImageLoader loader, StillImageDecoder decoder, int maxPixels) {
+        mLoader = loader;
+        mDecoder = decoder;
+        mMaxPixels = maxPixels;
+        mWorkers = workerCount(maxPixels);
+    }
+    
+    /**
+     * Returns as many workers as there are cores, but no more than can hold a downsampled image 
+     * each (ARGB bitmap plus luminance) in a quarter of the heap.
+     */
+    static int workerCount(int maxPixels) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        long bytesPerImage = 5L * maxPixels;
+        long budget = Runtime.getRuntime().maxMemory() / 4;
+        return (int) Math.max(1, Math.min(cores, budget / bytesPerImage));
+    }
+    
+    private static ThreadPoolExecutor createExecutor() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(cores, cores, 
+                30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+    
+    /**
+     * Starts decoding the files and returns immediately. At most workerCount() files of this call
+     * are decoded at the same time, each worker takes the next file once it is done.
+     */
+    void scan(final List<String> paths, final Listener listener) {
+        if (paths.isEmpty()) {
+            listener.didFinish(0);
+            return;
+        }
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicInteger remaining = new AtomicInteger(paths.size());
+        int workers = Math.min(mWorkers, paths.size());
+        for (int i = 0; i < workers; i++) {
+            sExecutor.execute(new Runnable() {
+                public void run() {
+                    byte[] buffer = null;
+                    int index;
+                    while ((index = next.getAndIncrement()) < paths.size()) {
+                        try {
+                            buffer = scanImage(paths.get(index), buffer, listener);
+                        } finally {
+                            if (remaining.decrementAndGet() == 0) {
+                                listener.didFinish(paths.size());
+                            }
+                        }
+                    }
+                }
+            });
+        }
+    }
+    
+    /**
+     * @return The buffer to reuse for the next image.
+     */
+    private byte[] scanImage(String path, byte[] buffer, Listener listener) {
+        int[] size = new int[2];
+        byte[] luminance;
+        try {
+            luminance = mLoader.load(new File(path), mMaxPixels, buffer, size);
+        } catch (IOException e) {
+            report(listener, path, null, e.getMessage());
+            return buffer;
+        } catch (RuntimeException e) {
+            report(listener, path, null, e.toString());
+            return buffer;
+        }
+        
+        String[] result;
+        try {
+            result = mDecoder.decode(luminance, size[0], size[1]);
+        } catch (RuntimeException e) {
+            report(listener, path, null, e.toString());
+            return luminance;
+        }
+        report(listener, path, result, null);
+        return luminance;
+    }
+    
+    /**
+     * Reports the file to the listener. If the listener fails, the failure is reported as the 
+     * error of the file instead, such that the worker goes on with the next file and didFinish is
+     * still called.
+     */
+    private static void report(Listener listener, String path, String[] result, String error) {
+        try {
+            listener.didScanImage(path, result, error);
+        } catch (RuntimeException e) {
+            if (error != null) {
+                // Failed on reporting an error already, the file stays unreported.
+                return;
+            }
+            try {
+                listener.didScanImage(path, null, e.toString());
+            } catch (RuntimeException ignored) {
+                // As above.
+            }
+        }
+    }
+}
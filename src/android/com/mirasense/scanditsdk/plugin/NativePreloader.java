@@ -0,0 +1,103 @@
+//
+//  Copyright 2010 Mirasense AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+//
+//
+
+package com.mirasense.scanditsdk.plugin;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import android.os.Process;
+import android.util.Log;
+
+import com.mirasense.scanditsdk.ScanditSDKBarcodePicker;
+
+/**
+ * Loads the native library of the Scandit SDK and initializes the picker classes on a background
+ * thread, such that the first scan screen does not have to.
+ * 
+ * Class initialization holds a lock that the scan screen would otherwise wait for on the UI 
+ * thread, scans therefore wait for the preload in the background before they open the scan 
+ * screen.
+ */
+final class NativePreloader {
+    
+    // The library of the SDK version this plugin was written against, used if the app's 
+    // config.xml does not name one.
+    static final String DEFAULT_LIBRARY = "scanditsdk-android-3.3.1";
+    
+    private static final CountDownLatch sDone = new CountDownLatch(1);
+    private static boolean sStarted;
+    
+    
+    private NativePreloader() {
+    }
+    
+    /**
+     * Starts the preload unless it was started before.
+     * 
+     * @param library Name of the native library as passed to System.loadLibrary.
+     */
+    static synchronized void start(final String library) {
+        if (sStarted) {
+            return;
+        }
+        sStarted = true;
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                long start = System.nanoTime();
+                try {
+                    System.loadLibrary(library);
+                    // Runs the static initialization of the picker and the classes the scan 
+                    // screen uses.
+                    ScanditSDKBarcodePicker.canRunPortraitPicker();
+                    Class.forName("com.mirasense.scanditsdk.LegacyPortraitScanditSDKBarcodePicker");
+                    Class.forName(ScanditSDKActivity.class.getName());
+                    Class.forName(ScanSettings.class.getName());
+                    Log.i("ScanditSDK", "Preloaded in " 
+                            + (System.nanoTime() - start) / 1000000 + " ms.");
+                } catch (Throwable e) {
+                    // The scan screen loads what is missing itself.
+                    Log.w("ScanditSDK", "Preloading failed.", e);
+                } finally {
+                    sDone.countDown();
+                }
+            }
+        }, "ScanditSDK preload");
+        thread.start();
+    }
+    
+    /**
+     * Waits for the preload to complete, at most for the given time. Returns immediately if no 
+     * preload was started.
+     * 
+     * @return False if the preload is still in progress.
+     */
+    static boolean awaitReady(long timeoutMillis) {
+        synchronized (NativePreloader.class) {
+            if (!sStarted) {
+                return true;
+            }
+        }
+        try {
+            return sDone.await(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
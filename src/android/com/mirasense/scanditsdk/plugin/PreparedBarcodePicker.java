@@ -0,0 +1,188 @@
+//
+//  Copyright 2010 Mirasense AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+//
+//
+
+package com.mirasense.scanditsdk.plugin;
+
+import android.content.Context;
+import android.view.ViewGroup;
+import android.view.ViewParent;
+
+import com.mirasense.scanditsdk.ScanditSDKBarcodePicker;
+import com.mirasense.scanditsdk.interfaces.ScanditSDK;
+import com.mirasense.scanditsdk.interfaces.ScanditSDKListener;
+
+/**
+ * Holds a barcode picker that was constructed ahead of time through the prepare action, such that 
+ * the scan screen can reuse it instead of constructing a new picker and initializing the engine
+ * on every scan.
+ * 
+ * The picker is registered with a single listener for its whole lifetime which forwards all events
+ * to whoever currently uses the picker. All methods have to be called on the UI thread.
+ */
+final class PreparedBarcodePicker implements ScanditSDKListener {
+    
+    private static PreparedBarcodePicker sInstance;
+    
+    private final ScanditSDKBarcodePicker mPicker;
+    private final String mAppKey;
+    private final int mFacing;
+    private ScanditSDKListener mListener;
+    private boolean mReleaseWhenRecycled;
+    // The settings last applied to the picker, null while none were.
+    private ScanSettings mApplied;
+    // Set once settings with autoProfile or adaptiveHotSpot were applied, whose adapters change the
+    // symbologies and the hot spot height beyond what mApplied holds.
+    private boolean mAdapted;
+    
+    
+    private PreparedBarcodePicker(Context context, String appKey, int facing) {
+        mPicker = new ScanditSDKBarcodePicker(context, appKey, facing);
+        mAppKey = appKey;
+        mFacing = facing;
+        mPicker.getOverlayView().addListener(this);
+    }
+    
+    /**
+     * Constructs the picker for the given app key and camera unless an identical one is already 
+     * prepared. Returns false if the device can not run the picker that supports reuse.
+     */
+    static boolean prepare(Context context, String appKey, boolean preferFrontCamera) {
+        if (!ScanditSDKBarcodePicker.canRunPortraitPicker()) {
+            return false;
+        }
+        int facing = facing(preferFrontCamera);
+        if (sInstance != null) {
+            if (sInstance.matches(appKey, facing)) {
+                sInstance.mReleaseWhenRecycled = false;
+                return true;
+            }
+            release();
+        }
+        sInstance = new PreparedBarcodePicker(context, appKey, facing);
+        return true;
+    }
+    
+    static boolean isPrepared() {
+        return sInstance != null;
+    }
+    
+    /**
+     * Hands out the prepared picker if it matches the given app key and camera and is not in use
+     * already. Events of the picker are forwarded to the listener until the picker is recycled.
+     */
+    static ScanditSDKBarcodePicker acquire(String appKey, boolean preferFrontCamera,
+                                           ScanditSDKListener listener) {
+        PreparedBarcodePicker prepared = sInstance;
+        if (prepared == null || prepared.mListener != null
+                || !prepared.matches(appKey, facing(preferFrontCamera))) {
+            return null;
+        }
+        prepared.mListener = listener;
+        return prepared.mPicker;
+    }
+    
+    /**
+     * Puts the settings to effect on the given picker. If it is the prepared picker, the options 
+     * an earlier scan set and the settings leave out are reset, such that nothing of the earlier
+     * scan's configuration carries over. That includes the symbologies and hot spot height the 
+     * adaptive options of the earlier scan set on the picker directly.
+     * 
+     * @param previous The settings the caller applied to the picker last, null if none. Null 
+     *        starts a new scan, otherwise the adaptive options of the running scan stay in effect.
+     */
+    static void apply(ScanditSDK picker, ScanSettings settings, ScanSettings previous) {
+        PreparedBarcodePicker prepared = sInstance;
+        if (prepared != null && prepared.mPicker == picker) {
+            if (prepared.mApplied != null) {
+                if (previous == null && prepared.mAdapted) {
+                    prepared.mApplied.reapplyAdapted(picker);
+                    prepared.mAdapted = false;
+                }
+                previous = prepared.mApplied;
+            }
+            prepared.mApplied = settings;
+            prepared.mAdapted |= settings.get(ScanSettings.AUTO_PROFILE) 
+                    || settings.get(ScanSettings.ADAPTIVE_HOT_SPOT);
+        }
+        if (previous == null) {
+            settings.applyTo(picker);
+        } else {
+            settings.applyReplacing(picker, previous);
+        }
+    }
+    
+    /**
+     * Returns the picker handed out to the listener such that the next scan can use it again.
+     */
+    static void recycle(ScanditSDKListener listener) {
+        PreparedBarcodePicker prepared = sInstance;
+        if (prepared == null || prepared.mListener != listener) {
+            return;
+        }
+        prepared.mPicker.stopScanning();
+        ViewParent parent = prepared.mPicker.getParent();
+        if (parent instanceof ViewGroup) {
+            ((ViewGroup) parent).removeView(prepared.mPicker);
+        }
+        prepared.mListener = null;
+        if (prepared.mReleaseWhenRecycled) {
+            release();
+        }
+    }
+    
+    /**
+     * Frees the prepared picker. If it is in use it is freed as soon as it is recycled.
+     */
+    static void release() {
+        PreparedBarcodePicker prepared = sInstance;
+        if (prepared == null) {
+            return;
+        }
+        if (prepared.mListener != null) {
+            prepared.mReleaseWhenRecycled = true;
+        } else {
+            prepared.mPicker.stopScanning();
+            sInstance = null;
+        }
+    }
+    
+    private boolean matches(String appKey, int facing) {
+        return mAppKey.equals(appKey) && mFacing == facing;
+    }
+    
+    private static int facing(boolean preferFrontCamera) {
+        return preferFrontCamera ? ScanditSDK.CAMERA_FACING_FRONT : ScanditSDK.CAMERA_FACING_BACK;
+    }
+    
+    public void didCancel() {
+        if (mListener != null) {
+            mListener.didCancel();
+        }
+    }
+    
+    public void didScanBarcode(String barcode, String symbology) {
+        if (mListener != null) {
+            mListener.didScanBarcode(barcode, symbology);
+        }
+    }
+    
+    public void didManualSearch(String entry) {
+        if (mListener != null) {
+            mListener.didManualSearch(entry);
+        }
+    }
+}
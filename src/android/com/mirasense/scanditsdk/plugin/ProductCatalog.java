@@ -0,0 +1,399 @@
+//
+//  Copyright 2010 Mirasense AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+//
+//
+
+package com.mirasense.scanditsdk.plugin;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Product records looked up by the numeric value of a scanned code, read from a sorted index file 
+ * that is memory-mapped instead of loaded on the heap.
+ * 
+ * The index file consists of a header (magic, version, record count), the sorted keys as 64 bit
+ * integers, count + 1 record offsets as 32 bit integers and the UTF-8 encoded records. Keys are the
+ * numeric values of the codes, such that an UPC-A code and the EAN-13 code with a leading zero find
+ * the same record. Codes that are not purely numeric or longer than 18 digits are never found.
+ */
+final class ProductCatalog {
+    
+    private static final int MAGIC = 0x53434154; // "SCAT"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    
+    // Number of CSV lines sorted in memory at once while building an index.
+    private static final int RUN_SIZE = 50000;
+    
+    private final RandomAccessFile mFile;
+    private final MappedByteBuffer mBuffer;
+    private final int mCount;
+    private final int mOffsetsStart;
+    private final int mDataStart;
+    
+    
+    private ProductCatalog(RandomAccessFile file, MappedByteBuffer buffer) throws IOException {
+        mFile = file;
+        mBuffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC 
+                || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a product catalog index");
+        }
+        mCount = buffer.getInt(8);
+        mOffsetsStart = HEADER_SIZE + 8 * mCount;
+        mDataStart = mOffsetsStart + 4 * (mCount + 1);
+        if (mCount < 0 || mDataStart > buffer.capacity()) {
+            throw new IOException("Truncated product catalog index");
+        }
+    }
+    
+    /**
+     * Maps the index file into memory.
+     */
+    static ProductCatalog open(File index) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(index, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new ProductCatalog(file, buffer);
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+    
+    int size() {
+        return mCount;
+    }
+    
+    /**
+     * Returns the record stored for the code, or null if there is none.
+     */
+    String lookup(String barcode) {
+        long key = parseKey(barcode);
+        if (key < 0) {
+            return null;
+        }
+        
+        int low = 0;
+        int high = mCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midKey = mBuffer.getLong(HEADER_SIZE + 8 * mid);
+            if (midKey < key) {
+                low = mid + 1;
+            } else if (midKey > key) {
+                high = mid - 1;
+            } else {
+                return record(mid);
+            }
+        }
+        return null;
+    }
+    
+    private String record(int index) {
+        int start = mBuffer.getInt(mOffsetsStart + 4 * index);
+        int end = mBuffer.getInt(mOffsetsStart + 4 * (index + 1));
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = mBuffer.get(mDataStart + start + i);
+        }
+        try {
+            return new String(bytes, "UTF-8");
+        } catch (java.io.UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    /**
+     * Releases the file. The mapping itself is freed once the catalog is garbage collected.
+     */
+    void close() {
+        try {
+            mFile.close();
+        } catch (IOException e) {
+            // Nothing left to do.
+        }
+    }
+    
+    /**
+     * Returns the numeric value of the code, or -1 if it is not a number of at most 18 digits.
+     */
+    static long parseKey(String barcode) {
+        int length = barcode.length();
+        if (length == 0 || length > 18) {
+            return -1;
+        }
+        long key = 0;
+        for (int i = 0; i < length; i++) {
+            char c = barcode.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            key = key * 10 + (c - '0');
+        }
+        return key;
+    }
+    
+    /**
+     * Builds an index file from a CSV file whose first column is the code and the remainder of each 
+     * line is the record. Lines whose first column is not a code, such as a header line, are 
+     * skipped. Of duplicate codes the first one is kept.
+     * 
+     * The CSV file is sorted in runs of bounded size which are then merged, such that it is never 
+     * held on the heap completely. The index is written next to its destination and moved into 
+     * place once complete.
+     * 
+     * @return The number of records in the index.
+     */
+    static int build(File csv, File index) throws IOException {
+        File directory = index.getAbsoluteFile().getParentFile();
+        List<File> runs = new ArrayList<File>();
+        try {
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(new FileInputStream(csv), "UTF-8"));
+            try {
+                long[] keys = new long[RUN_SIZE];
+                String[] records = new String[RUN_SIZE];
+                int size = 0;
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int comma = line.indexOf(',');
+                    String code = (comma < 0 ? line : line.substring(0, comma)).trim();
+                    long key = parseKey(code);
+                    if (key < 0) {
+                        continue;
+                    }
+                    keys[size] = key;
+                    records[size] = comma < 0 ? "" : line.substring(comma + 1);
+                    size++;
+                    if (size == RUN_SIZE) {
+                        runs.add(writeRun(directory, keys, records, size));
+                        size = 0;
+                    }
+                }
+                if (size > 0 || runs.isEmpty()) {
+                    runs.add(writeRun(directory, keys, records, size));
+                }
+            } finally {
+                reader.close();
+            }
+            
+            File tmp = new File(directory, index.getName() + ".tmp");
+            int count = mergeRuns(runs, tmp, directory);
+            if (!tmp.renameTo(index)) {
+                index.delete();
+                if (!tmp.renameTo(index)) {
+                    throw new IOException("Could not replace " + index);
+                }
+            }
+            return count;
+        } finally {
+            for (File run : runs) {
+                run.delete();
+            }
+        }
+    }
+    
+    private static File writeRun(File directory, final long[] keys, String[] records, int size)
+            throws IOException {
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        // Stable, such that the first of duplicate codes stays first.
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                long keyA = keys[a];
+                long keyB = keys[b];
+                return keyA < keyB ? -1 : (keyA == keyB ? 0 : 1);
+            }
+        });
+        
+        File run = File.createTempFile("catalog", ".run", directory);
+        DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(run)));
+        try {
+            for (int i = 0; i < size; i++) {
+                out.writeLong(keys[order[i]]);
+                byte[] record = records[order[i]].getBytes("UTF-8");
+                out.writeInt(record.length);
+                out.write(record);
+                records[order[i]] = null;
+            }
+        } finally {
+            out.close();
+        }
+        return run;
+    }
+    
+    /**
+     * Merges the sorted runs into the index file and returns the number of records.
+     */
+    private static int mergeRuns(List<File> runs, File index, File directory) throws IOException {
+        PriorityQueue<RunReader> queue = new PriorityQueue<RunReader>(runs.size(),
+                new Comparator<RunReader>() {
+                    public int compare(RunReader a, RunReader b) {
+                        if (a.key != b.key) {
+                            return a.key < b.key ? -1 : 1;
+                        }
+                        return a.number - b.number;
+                    }
+                });
+        File keysFile = File.createTempFile("catalog", ".keys", directory);
+        File offsetsFile = File.createTempFile("catalog", ".offsets", directory);
+        File dataFile = File.createTempFile("catalog", ".data", directory);
+        DataOutputStream keys = null;
+        DataOutputStream offsets = null;
+        DataOutputStream data = null;
+        int count = 0;
+        try {
+            keys = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(keysFile)));
+            offsets = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(offsetsFile)));
+            data = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(dataFile)));
+            for (int i = 0; i < runs.size(); i++) {
+                RunReader reader = new RunReader(runs.get(i), i);
+                if (reader.next()) {
+                    queue.add(reader);
+                } else {
+                    reader.close();
+                }
+            }
+            
+            boolean first = true;
+            long previousKey = 0;
+            while (!queue.isEmpty()) {
+                RunReader reader = queue.poll();
+                if (first || reader.key != previousKey) {
+                    keys.writeLong(reader.key);
+                    offsets.writeInt(data.size());
+                    data.write(reader.record);
+                    previousKey = reader.key;
+                    first = false;
+                    count++;
+                }
+                if (reader.next()) {
+                    queue.add(reader);
+                } else {
+                    reader.close();
+                }
+            }
+            offsets.writeInt(data.size());
+            keys.close();
+            offsets.close();
+            data.close();
+            
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(index)));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(count);
+                out.writeInt(0);
+                copy(keysFile, out);
+                copy(offsetsFile, out);
+                copy(dataFile, out);
+            } finally {
+                out.close();
+            }
+        } finally {
+            for (RunReader reader : queue) {
+                reader.close();
+            }
+            if (keys != null) {
+                keys.close();
+            }
+            if (offsets != null) {
+                offsets.close();
+            }
+            if (data != null) {
+                data.close();
+            }
+            keysFile.delete();
+            offsetsFile.delete();
+            dataFile.delete();
+        }
+        return count;
+    }
+    
+    private static void copy(File file, OutputStream out) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+        }
+    }
+    
+    /**
+     * Reads the records of a sorted run one at a time.
+     */
+    private static final class RunReader {
+        
+        final int number;
+        long key;
+        byte[] record;
+        private final DataInputStream mIn;
+        
+        RunReader(File run, int number) throws IOException {
+            this.number = number;
+            mIn = new DataInputStream(new BufferedInputStream(new FileInputStream(run)));
+        }
+        
+        boolean next() throws IOException {
+            try {
+                key = mIn.readLong();
+            } catch (EOFException e) {
+                return false;
+            }
+            record = new byte[mIn.readInt()];
+            mIn.readFully(record);
+            return true;
+        }
+        
+        void close() {
+            try {
+                mIn.close();
+            } catch (IOException e) {
+                // Nothing left to do.
+            }
+        }
+    }
+}
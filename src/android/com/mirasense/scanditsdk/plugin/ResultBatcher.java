@@ -0,0 +1,91 @@
+//
+//  Copyright 2010 Mirasense AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+//
+//
+
+package com.mirasense.scanditsdk.plugin;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+import org.apache.cordova.PluginResult.Status;
+import org.json.JSONArray;
+
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * Collects the results of a continuous scan and sends them to Java Script in batches, such that 
+ * bursts of scans cross the bridge once instead of once per code.
+ * 
+ * A batch is sent as soon as it holds the maximum number of results or its oldest result has waited
+ * for the maximum time, whichever comes first. Each batch is an array of results as created by
+ * ScanditSDK.createResult.
+ */
+final class ResultBatcher {
+    
+    private final CallbackContext mCallbackContext;
+    private final int mMaxSize;
+    private final long mMaxDelayMillis;
+    private final ScanMetrics.Timing mTiming;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Runnable mFlushRunnable = new Runnable() {
+        public void run() {
+            flush();
+        }
+    };
+    private JSONArray mPending;
+    
+    
+    /**
+     * @param maxDelayMillis Time after which a result is sent at the latest, 0 to only send full
+     *        batches and the remainder on flush().
+     */
+    ResultBatcher(CallbackContext callbackContext, int maxSize, long maxDelayMillis, 
+                  ScanMetrics.Timing timing) {
+        mCallbackContext = callbackContext;
+        mMaxSize = maxSize;
+        mMaxDelayMillis = maxDelayMillis;
+        mTiming = timing;
+    }
+    
+    synchronized void add(JSONArray result) {
+        if (mPending == null) {
+            mPending = new JSONArray();
+            if (mMaxDelayMillis > 0) {
+                mHandler.postDelayed(mFlushRunnable, mMaxDelayMillis);
+            }
+        }
+        mPending.put(result);
+        if (mPending.length() >= mMaxSize) {
+            flush();
+        }
+    }
+    
+    /**
+     * Sends the results collected so far. The batch is sent while holding the lock such that batches
+     * arrive in order no matter which thread flushes.
+     */
+    synchronized void flush() {
+        mHandler.removeCallbacks(mFlushRunnable);
+        if (mPending == null) {
+            return;
+        }
+        PluginResult result = new PluginResult(Status.OK, mPending);
+        result.setKeepCallback(true);
+        mPending = null;
+        mCallbackContext.sendPluginResult(result);
+        ScanMetrics.mark(mTiming, ScanMetrics.DELIVERED);
+    }
+}
@@ -0,0 +1,347 @@
+//
+//  Copyright 2010 Mirasense AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+//
+//
+
+package com.mirasense.scanditsdk.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.cordova.CallbackContext;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.util.Log;
+
+/**
+ * Append-only log of scanned codes kept in a memory-mapped file, such that results survive a busy
+ * or reloading web view and can be read by Java Script in pages whenever it is ready.
+ * 
+ * The file starts with a header (magic, version, sequence number of the first record) followed by
+ * the records, each an int length and the body: long sequence number, long timestamp, int length
+ * of the code, the code and the symbology, both UTF-8. The length is written after the body, a
+ * record is therefore either complete or ends the journal. 
+ * 
+ * All file access happens on a single writer thread, appending only queues the record and never 
+ * blocks the caller. Records written within GROUP_COMMIT_MILLIS are flushed to the disk together.
+ */
+final class ScanJournal {
+    
+    private static final int MAGIC = 0x534a4e4c; // "SJNL"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int MIN_BODY_SIZE = 20;
+    private static final int INITIAL_CAPACITY = 64 * 1024;
+    private static final int MAX_CAPACITY = 1 << 30;
+    private static final long GROUP_COMMIT_MILLIS = 100;
+    
+    private final File mFile;
+    private final ScheduledExecutorService mExecutor;
+    
+    // Only accessed on the executor.
+    private FileChannel mChannel;
+    private MappedByteBuffer mBuffer;
+    private IOException mOpenFailure;
+    private long mFirstSeq;
+    private int[] mOffsets = new int[256];
+    private int mCount;
+    private int mPosition;
+    private boolean mCommitScheduled;
+    
+    
+    ScanJournal(File file) {
+        mFile = file;
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1);
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(true);
+        mExecutor = executor;
+    }
+    
+    /**
+     * Queues a code to be appended to the journal, timestamped with the current time.
+     */
+    void append(final String barcode, final String symbology) {
+        final long time = System.currentTimeMillis();
+        mExecutor.execute(new Runnable() {
+            public void run() {
+                try {
+                    open();
+                    write(barcode, symbology, time);
+                } catch (IOException e) {
+                    Log.e("ScanditSDK", "Could not append to the scan journal.", e);
+                }
+            }
+        });
+    }
+    
+    /**
+     * Calls the success callback with up to limit records starting at the given sequence number, 
+     * as {"entries": [[seq, timestamp, barcode, symbology], ...], "firstSeq": n, "nextSeq": n}. 
+     * nextSeq is the sequence number to continue reading with. Records that were already dropped 
+     * are skipped.
+     */
+    void read(final long fromSeq, final int limit, final CallbackContext callbackContext) {
+        mExecutor.execute(new Runnable() {
+            public void run() {
+                try {
+                    open();
+                    long seq = Math.max(fromSeq, mFirstSeq);
+                    long end = Math.min(mFirstSeq + mCount, seq + limit);
+                    JSONArray entries = new JSONArray();
+                    for (; seq < end; seq++) {
+                        entries.put(readRecord(mOffsets[(int) (seq - mFirstSeq)]));
+                    }
+                    JSONObject page = new JSONObject();
+                    page.put("entries", entries);
+                    page.put("firstSeq", mFirstSeq);
+                    page.put("nextSeq", Math.min(seq, mFirstSeq + mCount));
+                    callbackContext.success(page);
+                } catch (IOException e) {
+                    callbackContext.error(e.getMessage());
+                } catch (JSONException e) {
+                    callbackContext.error(e.getMessage());
+                }
+            }
+        });
+    }
+    
+    /**
+     * Drops the records before the given sequence number and shrinks the file accordingly. 
+     * Sequence numbers of the remaining and later records do not change.
+     */
+    void truncate(final long beforeSeq, final CallbackContext callbackContext) {
+        mExecutor.execute(new Runnable() {
+            public void run() {
+                try {
+                    open();
+                    compact(beforeSeq);
+                    callbackContext.success();
+                } catch (IOException e) {
+                    callbackContext.error(e.getMessage());
+                }
+            }
+        });
+    }
+    
+    /**
+     * Flushes the records written so far and closes the file once the queued work is done.
+     */
+    void close() {
+        mExecutor.execute(new Runnable() {
+            public void run() {
+                commit();
+                closeChannel();
+            }
+        });
+        mExecutor.shutdown();
+    }
+    
+    private void open() throws IOException {
+        if (mOpenFailure != null) {
+            throw mOpenFailure;
+        }
+        if (mChannel != null) {
+            return;
+        }
+        try {
+            mChannel = new RandomAccessFile(mFile, "rw").getChannel();
+            long length = mChannel.size();
+            if (length > MAX_CAPACITY) {
+                throw new IOException("Scan journal is too large: " + mFile);
+            }
+            map(Math.max(INITIAL_CAPACITY, (int) length));
+            if (length == 0) {
+                mBuffer.putInt(0, MAGIC);
+                mBuffer.putInt(4, VERSION);
+                mBuffer.putLong(8, 1);
+            } else if (mBuffer.getInt(0) != MAGIC || mBuffer.getInt(4) != VERSION) {
+                throw new IOException("Not a scan journal: " + mFile);
+            }
+            mFirstSeq = mBuffer.getLong(8);
+            recover();
+        } catch (IOException e) {
+            closeChannel();
+            mOpenFailure = e;
+            throw e;
+        }
+    }
+    
+    /**
+     * Indexes the complete records, the first incomplete or inconsistent one ends the journal.
+     */
+    private void recover() {
+        int capacity = mBuffer.capacity();
+        int position = HEADER_SIZE;
+        mCount = 0;
+        while (position <= capacity - 4 - MIN_BODY_SIZE) {
+            int length = mBuffer.getInt(position);
+            if (length < MIN_BODY_SIZE || length > capacity - position - 4
+                    || mBuffer.getLong(position + 4) != mFirstSeq + mCount) {
+                break;
+            }
+            int codeLength = mBuffer.getInt(position + 20);
+            if (codeLength < 0 || codeLength > length - MIN_BODY_SIZE) {
+                break;
+            }
+            addOffset(position);
+            position += 4 + length;
+        }
+        mPosition = position;
+    }
+    
+    private void write(String barcode, String symbology, long time) throws IOException {
+        byte[] code = utf8(barcode);
+        byte[] name = utf8(symbology);
+        int length = MIN_BODY_SIZE + code.length + name.length;
+        // Keep room for a zero length after the record, which marks the end of the journal.
+        ensureCapacity(mPosition + 4 + length + 4);
+        
+        mBuffer.position(mPosition + 4);
+        mBuffer.putLong(mFirstSeq + mCount);
+        mBuffer.putLong(time);
+        mBuffer.putInt(code.length);
+        mBuffer.put(code);
+        mBuffer.put(name);
+        mBuffer.putInt(mPosition + 4 + length, 0);
+        mBuffer.putInt(mPosition, length);
+        addOffset(mPosition);
+        mPosition += 4 + length;
+        
+        if (!mCommitScheduled) {
+            mCommitScheduled = true;
+            mExecutor.schedule(new Runnable() {
+                public void run() {
+                    commit();
+                }
+            }, GROUP_COMMIT_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    private void commit() {
+        mCommitScheduled = false;
+        if (mBuffer != null) {
+            mBuffer.force();
+        }
+    }
+    
+    private JSONArray readRecord(int position) throws IOException {
+        int length = mBuffer.getInt(position);
+        int codeLength = mBuffer.getInt(position + 20);
+        byte[] code = new byte[codeLength];
+        byte[] name = new byte[length - MIN_BODY_SIZE - codeLength];
+        mBuffer.position(position + 24);
+        mBuffer.get(code);
+        mBuffer.get(name);
+        
+        JSONArray record = new JSONArray();
+        record.put(mBuffer.getLong(position + 4));
+        record.put(mBuffer.getLong(position + 12));
+        record.put(new String(code, "UTF-8"));
+        record.put(new String(name, "UTF-8"));
+        return record;
+    }
+    
+    /**
+     * Rewrites the journal without the records before the given sequence number. The new file 
+     * replaces the old one only once it is complete.
+     */
+    private void compact(long beforeSeq) throws IOException {
+        commit();
+        long nextSeq = mFirstSeq + mCount;
+        long firstSeq = Math.max(mFirstSeq, Math.min(beforeSeq, nextSeq));
+        int dropped = (int) (firstSeq - mFirstSeq);
+        int start = dropped < mCount ? mOffsets[dropped] : mPosition;
+        int remaining = mPosition - start;
+        
+        File tmp = new File(mFile.getPath() + ".tmp");
+        RandomAccessFile out = new RandomAccessFile(tmp, "rw");
+        try {
+            out.setLength(0);
+            MappedByteBuffer buffer = out.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, 
+                    capacityFor(HEADER_SIZE + remaining + 4));
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.putLong(firstSeq);
+            mBuffer.limit(mPosition).position(start);
+            buffer.put(mBuffer);
+            mBuffer.clear();
+            buffer.force();
+        } finally {
+            out.close();
+        }
+        
+        closeChannel();
+        if (!tmp.renameTo(mFile)) {
+            tmp.delete();
+            throw new IOException("Could not replace the scan journal: " + mFile);
+        }
+        open();
+    }
+    
+    private void ensureCapacity(int capacity) throws IOException {
+        if (capacity > mBuffer.capacity()) {
+            map(capacityFor(capacity));
+        }
+    }
+    
+    private static int capacityFor(int size) throws IOException {
+        if (size > MAX_CAPACITY) {
+            throw new IOException("Scan journal is full");
+        }
+        int capacity = INITIAL_CAPACITY;
+        while (capacity < size) {
+            capacity *= 2;
+        }
+        return capacity;
+    }
+    
+    private void map(int capacity) throws IOException {
+        // Mapping beyond the end grows the file, the new space reads as zeros.
+        mBuffer = mChannel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+    
+    private void addOffset(int position) {
+        if (mCount == mOffsets.length) {
+            int[] offsets = new int[mCount * 2];
+            System.arraycopy(mOffsets, 0, offsets, 0, mCount);
+            mOffsets = offsets;
+        }
+        mOffsets[mCount++] = position;
+    }
+    
+    private void closeChannel() {
+        if (mChannel != null) {
+            try {
+                mChannel.close();
+            } catch (IOException e) {
+                // Nothing left to save.
+            }
+        }
+        mChannel = null;
+        mBuffer = null;
+    }
+    
+    private static byte[] utf8(String value) throws UnsupportedEncodingException {
+        return value.getBytes("UTF-8");
+    }
+}
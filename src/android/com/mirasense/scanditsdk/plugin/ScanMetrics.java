@@ -0,0 +1,237 @@
+//
+//  Copyright 2010 Mirasense AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+//
+//
+
+package com.mirasense.scanditsdk.plugin;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Measures where the time of a scan goes. Every phase of a scan is timestamped with a monotonic
+ * clock relative to the start of the scan, each phase at most once per scan. Every scan has its 
+ * own Timing, such that queued and overlapping scans do not disturb each other. Scans that 
+ * construct a picker (cold) and scans that reuse the prepared one (warm) are kept apart in every
+ * phase, phases reached before the picker is known are recorded once it is. The most recent 
+ * samples of every phase are kept to report percentiles. Durations of events that can happen 
+ * any number of times during a scan are recorded separately.
+ */
+final class ScanMetrics {
+    
+    static final int ACTIVITY_CREATED = 0;
+    static final int PICKER_CONSTRUCTED = 1;
+    static final int PICKER_REUSED = 2;
+    static final int SCANNING_STARTED = 3;
+    static final int FIRST_DECODE = 4;
+    static final int DELIVERED = 5;
+    
+    private static final String[] PHASE_NAMES = {
+        "activityCreated", "pickerConstructed", "pickerReused", "scanningStarted", "firstDecode",
+        "delivered"
+    };
+    
+    static final int RESUME_RESTARTED = 0;
+    static final int IDLE_PERIOD = 1;
+    
+    private static final String[] DURATION_NAMES = {
+        "resumeRestarted", "idlePeriod"
+    };
+    
+    private static final int SAMPLE_COUNT = 256;
+    
+    // A scan either constructs a picker (cold) or reuses the prepared one (warm).
+    private static final int COLD = 0;
+    private static final int WARM = 1;
+    
+    private static final Histogram[][] sHistograms = new Histogram[2][PHASE_NAMES.length];
+    private static final Histogram[] sDurations = new Histogram[DURATION_NAMES.length];
+    // Timings of the scans through the scan screen, by request code.
+    private static final HashMap<Integer, Timing> sTimings = new HashMap<Integer, Timing>();
+    
+    static {
+        for (Histogram[] histograms : sHistograms) {
+            for (int i = 0; i < histograms.length; i++) {
+                histograms[i] = new Histogram(SAMPLE_COUNT);
+            }
+        }
+        for (int i = 0; i < sDurations.length; i++) {
+            sDurations[i] = new Histogram(SAMPLE_COUNT);
+        }
+    }
+    
+    
+    private ScanMetrics() {
+    }
+    
+    /**
+     * Called when the plugin is asked to start a scan, returns the timing of the scan.
+     */
+    static Timing beginScan() {
+        return new Timing();
+    }
+    
+    /**
+     * Makes the timing of the scan available to the scan screen opened for the request code.
+     */
+    static synchronized void register(int requestCode, Timing timing) {
+        sTimings.put(requestCode, timing);
+    }
+    
+    static synchronized void unregister(int requestCode) {
+        sTimings.remove(requestCode);
+    }
+    
+    /**
+     * Returns the timing of the scan the scan screen was opened for, or null if it is unknown.
+     */
+    static synchronized Timing forRequest(int requestCode) {
+        return sTimings.get(requestCode);
+    }
+    
+    /**
+     * Records that the scan reached the phase, unless it did so already or the timing is null.
+     */
+    static synchronized void mark(Timing timing, int phase) {
+        if (timing == null || (timing.mMarked & (1 << phase)) != 0) {
+            return;
+        }
+        long offset = System.nanoTime() - timing.mStart;
+        if (phase == PICKER_CONSTRUCTED || phase == PICKER_REUSED) {
+            timing.mKind = phase == PICKER_REUSED ? WARM : COLD;
+            for (int i = 0; i < PHASE_NAMES.length; i++) {
+                if ((timing.mMarked & (1 << i)) != 0) {
+                    sHistograms[timing.mKind][i].add(timing.mPending[i]);
+                }
+            }
+        }
+        timing.mMarked |= 1 << phase;
+        if (timing.mKind < 0) {
+            timing.mPending[phase] = offset;
+        } else {
+            sHistograms[timing.mKind][phase].add(offset);
+        }
+    }
+    
+    /**
+     * Records how long an event took, in nanoseconds.
+     */
+    static synchronized void record(int duration, long nanos) {
+        sDurations[duration].add(nanos);
+    }
+    
+    static synchronized void reset() {
+        for (Histogram[] histograms : sHistograms) {
+            for (Histogram histogram : histograms) {
+                histogram.clear();
+            }
+        }
+        for (Histogram histogram : sDurations) {
+            histogram.clear();
+        }
+    }
+    
+    /**
+     * Returns the count, percentiles and maximum of every phase of cold and of warm scans, in 
+     * milliseconds since the scan was started, as {"cold": {phase: ...}, "warm": {phase: ...}}, 
+     * and of every duration in milliseconds.
+     */
+    static synchronized JSONObject toJSON() throws JSONException {
+        JSONObject result = new JSONObject();
+        result.put("cold", phasesToJSON(sHistograms[COLD]));
+        result.put("warm", phasesToJSON(sHistograms[WARM]));
+        for (int i = 0; i < sDurations.length; i++) {
+            result.put(DURATION_NAMES[i], sDurations[i].toJSON());
+        }
+        return result;
+    }
+    
+    private static JSONObject phasesToJSON(Histogram[] histograms) throws JSONException {
+        JSONObject result = new JSONObject();
+        for (int i = 0; i < histograms.length; i++) {
+            result.put(PHASE_NAMES[i], histograms[i].toJSON());
+        }
+        return result;
+    }
+    
+    /**
+     * The phases one scan reached so far. Only accessed while holding the ScanMetrics lock.
+     */
+    static final class Timing {
+        
+        private final long mStart = System.nanoTime();
+        // Offsets of the phases reached before it is known whether the scan is cold or warm.
+        private final long[] mPending = new long[PHASE_NAMES.length];
+        private int mMarked;
+        private int mKind = -1;
+        
+        private Timing() {
+        }
+    }
+    
+    /**
+     * Keeps the most recent samples in a ring buffer.
+     */
+    static final class Histogram {
+        
+        private final long[] mSamples;
+        private int mSize;
+        private int mNext;
+        private long mCount;
+        
+        Histogram(int capacity) {
+            mSamples = new long[capacity];
+        }
+        
+        void add(long nanos) {
+            mSamples[mNext] = nanos;
+            mNext = (mNext + 1) % mSamples.length;
+            mSize = Math.min(mSize + 1, mSamples.length);
+            mCount++;
+        }
+        
+        void clear() {
+            mSize = 0;
+            mNext = 0;
+            mCount = 0;
+        }
+        
+        JSONObject toJSON() throws JSONException {
+            JSONObject result = new JSONObject();
+            result.put("count", mCount);
+            if (mSize > 0) {
+                long[] sorted = Arrays.copyOf(mSamples, mSize);
+                Arrays.sort(sorted);
+                result.put("p50", millis(percentile(sorted, 50)));
+                result.put("p90", millis(percentile(sorted, 90)));
+                result.put("p99", millis(percentile(sorted, 99)));
+                result.put("max", millis(sorted[sorted.length - 1]));
+            }
+            return result;
+        }
+        
+        private static long percentile(long[] sorted, int percent) {
+            int index = (int) Math.ceil(percent / 100.0 * sorted.length) - 1;
+            return sorted[Math.max(0, index)];
+        }
+        
+        private static double millis(long nanos) {
+            return nanos / 1000000.0;
+        }
+    }
+}
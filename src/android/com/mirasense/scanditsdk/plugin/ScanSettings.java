@@ -0,0 +1,797 @@
+//
+//  Copyright 2010 Mirasense AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+//
+//
+
+package com.mirasense.scanditsdk.plugin;
+
+import android.content.Context;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import com.mirasense.scanditsdk.interfaces.ScanditSDK;
+import com.mirasense.scanditsdk.interfaces.ScanditSDKOverlay;
+
+/**
+ * The options of a scan, parsed and validated once from the arguments passed through Java Script.
+ * 
+ * Instances are immutable and cached by the raw argument string, such that repeated scans with the
+ * same options neither parse the JSON nor the individual values again. Options that were not 
+ * given are not applied to the picker, which leaves them at the picker's defaults.
+ */
+final class ScanSettings {
+    
+    // Indices of the boolean options in mFlagsSet and mFlags.
+    static final int PREFER_FRONT_CAMERA = 0;
+    static final int SEARCH_BAR = 1;
+    static final int SCANNING_1D = 2;
+    static final int SCANNING_2D = 3;
+    static final int EAN13_AND_UPC12 = 4;
+    static final int EAN8 = 5;
+    static final int UPCE = 6;
+    static final int CODE39 = 7;
+    static final int CODE128 = 8;
+    static final int ITF = 9;
+    static final int QR = 10;
+    static final int DATA_MATRIX = 11;
+    static final int MSI_PLESSEY = 12;
+    static final int INVERSE_RECOGNITION = 13;
+    static final int MICRO_DATA_MATRIX = 14;
+    static final int FORCE_2D = 15;
+    static final int IGNORE_PREVIEW_ASPECT_RATIO = 16;
+    static final int TITLE_BAR = 17;
+    static final int TOOL_BAR = 18;
+    static final int BEEP = 19;
+    static final int VIBRATE = 20;
+    static final int TORCH = 21;
+    static final int VIEWFINDER_TEXT_HOOK = 22;
+    static final int CONTINUOUS_MODE = 23;
+    static final int VALIDATE_CHECKSUMS = 24;
+    static final int ADAPTIVE_HOT_SPOT = 25;
+    static final int JOURNAL = 26;
+    static final int AUTO_PROFILE = 27;
+    static final int GS1 = 28;
+    static final int BINARY_RESULT = 29;
+    static final int UPLOAD = 30;
+    
+    // Values of the queuePolicy option.
+    static final int QUEUE_ENQUEUE = 0;
+    static final int QUEUE_REJECT = 1;
+    static final int QUEUE_REPLACE = 2;
+    
+    private static final String[] FLAG_NAMES = {
+        "preferFrontCamera", "searchBar", "1DScanning", "2DScanning", "ean13AndUpc12", "ean8",
+        "upce", "code39", "code128", "itf", "qr", "dataMatrix", "msiPlessey", "inverseRecognition",
+        "microDataMatrix", "force2d", "ignorePreviewAspectRatio", "titleBar", "toolBar", "beep",
+        "vibrate", "torch", "viewfinderTextHook", "continuousMode", "validateChecksums",
+        "adaptiveHotSpot", "journal", "autoProfile", "gs1", "binaryResult",
+        "upload"
+    };
+    
+    // Indices of the text options in mTexts.
+    private static final int TEXT_INITIAL_SCAN_SCREEN_STATE = 0;
+    private static final int TEXT_BARCODE_PRESENCE_DETECTED = 1;
+    private static final int TEXT_BARCODE_DECODING_IN_PROGRESS = 2;
+    private static final int TITLE_MESSAGE = 3;
+    private static final int LEFT_BUTTON_CAPTION = 4;
+    private static final int LEFT_BUTTON_CAPTION_KEYPAD = 5;
+    private static final int RIGHT_BUTTON_CAPTION = 6;
+    private static final int RIGHT_BUTTON_CAPTION_KEYPAD = 7;
+    private static final int SEARCH_BAR_PLACEHOLDER = 8;
+    
+    private static final String[] TEXT_NAMES = {
+        "textForInitialScanScreenState", "textForBarcodePresenceDetected",
+        "textForBarcodeDecodingInProgress", "titleMessage", "leftButtonCaption",
+        "leftButtonCaptionWhenKeypadVisible", "rightButtonCaption",
+        "rightButtonCaptionWhenKeypadVisible", "setSearchBarPlaceholderText"
+    };
+    
+    private static final int CACHE_SIZE = 8;
+    
+    private static final Map<String, ScanSettings> sCache =
+            new LinkedHashMap<String, ScanSettings>(CACHE_SIZE, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+        
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ScanSettings> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+    private static int sNextId = 1;
+    private static ScanSettings sLastLaunched;
+    
+    // The settings of a picker no option has been applied to.
+    private static final ScanSettings DEFAULTS;
+    // The documented picker defaults of the options that can be reset on a reused picker. The 
+    // viewfinder text hook, the textFor* texts and the logo offsets have no documented default,
+    // ignorePreviewAspectRatio can not be undone.
+    private static final String PICKER_DEFAULTS = "{\"searchBar\": false, \"1DScanning\": true, "
+            + "\"2DScanning\": true, \"ean13AndUpc12\": true, \"ean8\": true, \"upce\": true, "
+            + "\"code39\": true, \"code128\": true, \"itf\": true, \"qr\": false, "
+            + "\"dataMatrix\": false, \"msiPlessey\": false, \"msiPlesseyChecksumType\": \"mod10\", "
+            + "\"inverseRecognition\": false, \"microDataMatrix\": false, \"force2d\": false, "
+            + "\"scanningHotSpot\": \"0.5/0.5\", \"scanningHotSpotHeight\": 0.25, "
+            + "\"titleBar\": true, \"toolBar\": true, \"beep\": true, \"vibrate\": true, "
+            + "\"torch\": true, \"torchButtonPositionAndSize\": \"0.05/0.01/67/33\", "
+            + "\"cameraSwitchVisibility\": \"never\", "
+            + "\"cameraSwitchButtonPositionAndSize\": \"0.05/0.01/67/33\", "
+            + "\"titleMessage\": \"Scan a barcode\", \"leftButtonCaption\": \"KEYPAD\", "
+            + "\"leftButtonCaptionWhenKeypadVisible\": \"OK\", \"rightButtonCaption\": \"CANCEL\", "
+            + "\"rightButtonCaptionWhenKeypadVisible\": \"CANCEL\", "
+            + "\"viewfinderSize\": \"0.8/0.4/0.6/0.4\", \"viewfinderColor\": \"FFFFFF\", "
+            + "\"viewfinderDecodedColor\": \"00FF00\"}";
+    static {
+        try {
+            DEFAULTS = new ScanSettings(0, null, new JSONObject());
+        } catch (JSONException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    private final int mId;
+    private final String mAppKey;
+    private final JSONObject mOptions;
+    private final int mFlagsSet;
+    private final int mFlags;
+    private final int mMsiPlesseyChecksum;
+    private final float[] mHotSpot;
+    private final float mHotSpotHeight;
+    private final float[] mTorchButton;
+    private final int mCameraSwitchVisibility;
+    private final float[] mCameraSwitchButton;
+    private final String[] mTexts;
+    private final float[] mViewfinderDimension;
+    private final float[] mViewfinderColor;
+    private final float[] mViewfinderDecodedColor;
+    private final float[] mLogoOffsets;
+    private final float[] mEmbeddedFrame;
+    private final int mDuplicateFilterWindow;
+    private final int mDuplicateFilterCacheSize;
+    private final int mBatchSize;
+    private final int mBatchInterval;
+    private final float[] mAdaptiveHotSpotRange;
+    private final int mAdaptiveHotSpotTargetLatency;
+    private final String mAutoProfileContext;
+    private final float mAutoProfileCoverage;
+    private final int mAutoProfileFallback;
+    private final int mQueuePolicy;
+    private final int mIdleTimeout;
+    private final float[] mIdleDutyCycle;
+    // These settings with every option they leave out at the picker default, created on demand.
+    private volatile ScanSettings mWithPickerDefaults;
+    
+    
+    private ScanSettings(int id, String appKey, JSONObject options) throws JSONException {
+        mId = id;
+        mAppKey = appKey;
+        mOptions = options;
+        
+        int flagsSet = 0;
+        int flags = 0;
+        for (int i = 0; i < FLAG_NAMES.length; i++) {
+            if (options.has(FLAG_NAMES[i])) {
+                flagsSet |= 1 << i;
+                if (options.optBoolean(FLAG_NAMES[i])) {
+                    flags |= 1 << i;
+                }
+            }
+        }
+        mFlagsSet = flagsSet;
+        mFlags = flags;
+        
+        mMsiPlesseyChecksum = parseChecksum(options.optString("msiPlesseyChecksumType", null));
+        mHotSpot = parseFloats(options, "scanningHotSpot", "[/]", 2, 2);
+        mHotSpotHeight = parseHotSpotHeight(options);
+        mTorchButton = parseFloats(options, "torchButtonPositionAndSize", "[/]", 4, 4);
+        mCameraSwitchVisibility = parseCameraSwitchVisibility(
+                options.optString("cameraSwitchVisibility", null));
+        mCameraSwitchButton = parseFloats(options, "cameraSwitchButtonPositionAndSize", "[/]", 4, 4);
+        
+        mTexts = new String[TEXT_NAMES.length];
+        for (int i = 0; i < TEXT_NAMES.length; i++) {
+            mTexts[i] = options.optString(TEXT_NAMES[i], null);
+        }
+        
+        // viewfinderSize is the documented name, viewfinderDimension is kept for compatibility.
+        float[] viewfinderDimension = parseFloats(options, "viewfinderSize", "[/]", 2, 4);
+        if (viewfinderDimension == null) {
+            viewfinderDimension = parseFloats(options, "viewfinderDimension", "[/]", 2, 4);
+        }
+        mViewfinderDimension = viewfinderDimension;
+        mViewfinderColor = parseColor(options.optString("viewfinderColor", null));
+        mViewfinderDecodedColor = parseColor(options.optString("viewfinderDecodedColor", null));
+        mLogoOffsets = parseFloats(options, "logoOffsets", "[,]", 4, 4);
+        
+        mEmbeddedFrame = parseFloats(options, "embeddedFrame", "[/]", 4, 4);
+        mDuplicateFilterWindow = parseInt(options, "duplicateFilterWindow", 0, 0);
+        mDuplicateFilterCacheSize = parseInt(options, "duplicateFilterCacheSize", 100, 1);
+        mBatchSize = parseInt(options, "batchSize", 1, 1);
+        mBatchInterval = parseInt(options, "batchInterval", 250, 0);
+        
+        float[] range = parseFloats(options, "adaptiveHotSpotRange", "[/]", 2, 2);
+        if (range == null) {
+            range = new float[] { 0.1f, 0.5f };
+        } else if (!(range[0] >= 0 && range[0] <= range[1] && range[1] <= 0.5f)) {
+            throw new JSONException("Illegal value for adaptiveHotSpotRange: " 
+                    + options.opt("adaptiveHotSpotRange"));
+        }
+        mAdaptiveHotSpotRange = range;
+        mAdaptiveHotSpotTargetLatency = parseInt(options, "adaptiveHotSpotTargetLatency", 1000, 1);
+        
+        mAutoProfileContext = options.optString("autoProfileContext", "default");
+        double coverage = options.optDouble("autoProfileCoverage", 0.999);
+        if (!(coverage > 0 && coverage <= 1)) {
+            throw new JSONException("Illegal value for autoProfileCoverage: " 
+                    + options.opt("autoProfileCoverage"));
+        }
+        mAutoProfileCoverage = (float) coverage;
+        mAutoProfileFallback = parseInt(options, "autoProfileFallback", 3000, 1);
+        mQueuePolicy = parseQueuePolicy(options.optString("queuePolicy", null));
+        
+        mIdleTimeout = parseInt(options, "idleTimeout", 0, 0);
+        float[] dutyCycle = parseFloats(options, "idleDutyCycle", "[/]", 2, 2);
+        if (dutyCycle == null) {
+            dutyCycle = new float[] { 500, 1500 };
+        } else if (!(dutyCycle[0] > 0 && dutyCycle[1] > 0)) {
+            throw new JSONException("Illegal value for idleDutyCycle: " 
+                    + options.opt("idleDutyCycle"));
+        }
+        mIdleDutyCycle = dutyCycle;
+    }
+    
+    /**
+     * Returns the settings for the arguments of a scan call, ["appKey", {options}]. The arguments 
+     * are only parsed if the identical argument string has not been seen recently.
+     * 
+     * @throws JSONException If the arguments are malformed or an option has an illegal value.
+     */
+    static ScanSettings forArgs(String rawArgs) throws JSONException {
+        synchronized (sCache) {
+            ScanSettings settings = sCache.get(rawArgs);
+            if (settings != null) {
+                return settings;
+            }
+        }
+        
+        JSONArray args = new JSONArray(rawArgs);
+        JSONObject options = args.optJSONObject(1);
+        ScanSettings settings;
+        synchronized (sCache) {
+            settings = new ScanSettings(sNextId++, args.getString(0),
+                    options != null ? options : new JSONObject());
+            sCache.put(rawArgs, settings);
+        }
+        return settings;
+    }
+    
+    /**
+     * Marks the settings as the ones used by the scan screen that is about to be started. Returns
+     * the id under which the scan screen can look them up.
+     */
+    static int launch(ScanSettings settings) {
+        synchronized (sCache) {
+            sLastLaunched = settings;
+        }
+        return settings.mId;
+    }
+    
+    /**
+     * Looks up the settings with the given id, or returns null if they are no longer known, for
+     * example because the process was restarted in the meantime.
+     */
+    static ScanSettings byId(int id) {
+        synchronized (sCache) {
+            if (sLastLaunched != null && sLastLaunched.mId == id) {
+                return sLastLaunched;
+            }
+            for (ScanSettings settings : sCache.values()) {
+                if (settings.mId == id) {
+                    return settings;
+                }
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Returns new settings with the given options replacing or adding to the ones of these 
+     * settings.
+     * 
+     * @throws JSONException If an option has an illegal value.
+     */
+    ScanSettings merge(JSONObject changes) throws JSONException {
+        JSONObject options = new JSONObject(mOptions.toString());
+        Iterator<?> keys = changes.keys();
+        while (keys.hasNext()) {
+            String key = (String) keys.next();
+            options.put(key, changes.opt(key));
+        }
+        synchronized (sCache) {
+            return new ScanSettings(sNextId++, mAppKey, options);
+        }
+    }
+    
+    String getAppKey() {
+        return mAppKey;
+    }
+    
+    boolean isSet(int flag) {
+        return (mFlagsSet & (1 << flag)) != 0;
+    }
+    
+    /**
+     * Returns the value of the boolean option, or false if it was not given.
+     */
+    boolean get(int flag) {
+        return (mFlags & (1 << flag)) != 0;
+    }
+    
+    /**
+     * Returns a recognized code the way it is reported: trimmed, unless binaryResult is set, in 
+     * which case whitespace and control characters at either end are part of the payload. With 
+     * the gs1 option a leading FNC1 is kept, as it marks the code as GS1.
+     */
+    String reportedBarcode(String barcode) {
+        if (get(BINARY_RESULT)) {
+            return barcode;
+        }
+        String trimmed = barcode.trim();
+        if (get(GS1) && barcode.length() > 0 && barcode.charAt(0) == Gs1Parser.GS 
+                && !trimmed.isEmpty()) {
+            return Gs1Parser.GS + trimmed;
+        }
+        return trimmed;
+    }
+    
+    /**
+     * Returns the checksum type of MSI Plessey codes as one of the ScanditSDK.CHECKSUM_* constants.
+     */
+    int getMsiPlesseyChecksum() {
+        return mMsiPlesseyChecksum >= 0 ? mMsiPlesseyChecksum : ScanditSDK.CHECKSUM_MOD_10;
+    }
+    
+    /**
+     * Returns x/y/width/height of the embedded picker, or null if it should cover the web view.
+     */
+    float[] getEmbeddedFrame() {
+        return mEmbeddedFrame;
+    }
+    
+    /**
+     * Returns the time in milliseconds during which a code is not reported again in continuous 
+     * mode, or 0 if every recognition is reported.
+     */
+    int getDuplicateFilterWindow() {
+        return mDuplicateFilterWindow;
+    }
+    
+    int getDuplicateFilterCacheSize() {
+        return mDuplicateFilterCacheSize;
+    }
+    
+    /**
+     * Returns the maximum number of results sent to Java Script at once, 1 if results are not 
+     * batched.
+     */
+    int getBatchSize() {
+        return mBatchSize;
+    }
+    
+    int getBatchInterval() {
+        return mBatchInterval;
+    }
+    
+    /**
+     * Returns how a scan is handled that is started while another one is running, as one of the 
+     * QUEUE_* constants.
+     */
+    int getQueuePolicy() {
+        return mQueuePolicy;
+    }
+    
+    /**
+     * Returns the duty cycler that lowers the frame rate of the given picker while idle, or null 
+     * if it always scans at full rate.
+     */
+    IdleDutyCycler createIdleDutyCycler(ScanditSDK picker) {
+        if (mIdleTimeout == 0) {
+            return null;
+        }
+        return new IdleDutyCycler(picker, mIdleTimeout, (long) mIdleDutyCycle[0], 
+                (long) mIdleDutyCycle[1]);
+    }
+    
+    /**
+     * Returns the hot spot tuner to use with these settings, or null if the hot spot height is 
+     * not adapted.
+     */
+    HotSpotTuner createHotSpotTuner(Context context) {
+        if (!get(ADAPTIVE_HOT_SPOT)) {
+            return null;
+        }
+        return new HotSpotTuner(context, mAdaptiveHotSpotRange[0], mAdaptiveHotSpotRange[1],
+                mAdaptiveHotSpotTargetLatency);
+    }
+    
+    /**
+     * Returns the symbology profile to use with these settings, or null if all enabled 
+     * symbologies are always used.
+     */
+    SymbologyProfile createSymbologyProfile(Context context) {
+        if (!get(AUTO_PROFILE)) {
+            return null;
+        }
+        return new SymbologyProfile(context, mAutoProfileContext, mAutoProfileCoverage,
+                mAutoProfileFallback);
+    }
+    
+    /**
+     * Puts all options to effect on the given picker.
+     */
+    void applyTo(ScanditSDK picker) {
+        applyChanges(picker, DEFAULTS);
+    }
+    
+    /**
+     * Puts the settings to effect on a reused picker that has the previous settings applied. Unlike
+     * applyChanges, options the previous settings set and these leave out are reset to the picker
+     * defaults.
+     */
+    void applyReplacing(ScanditSDK picker, ScanSettings previous) {
+        withPickerDefaults().applyChanges(picker, previous.withPickerDefaults());
+    }
+    
+    /**
+     * Puts the symbology and hot spot height options to effect again on a reused picker these 
+     * settings were applied to, undoing what autoProfile and adaptiveHotSpot set on the picker 
+     * since. Afterwards the picker is in the state applyReplacing expects.
+     */
+    void reapplyAdapted(ScanditSDK picker) {
+        ScanSettings settings = withPickerDefaults();
+        picker.setEan13AndUpc12Enabled(settings.get(EAN13_AND_UPC12));
+        picker.setEan8Enabled(settings.get(EAN8));
+        picker.setUpceEnabled(settings.get(UPCE));
+        picker.setCode39Enabled(settings.get(CODE39));
+        picker.setCode128Enabled(settings.get(CODE128));
+        picker.setItfEnabled(settings.get(ITF));
+        picker.setQrEnabled(settings.get(QR));
+        picker.setDataMatrixEnabled(settings.get(DATA_MATRIX));
+        picker.setMsiPlesseyEnabled(settings.get(MSI_PLESSEY));
+        picker.setScanningHotSpotHeight(settings.mHotSpotHeight);
+    }
+    
+    private ScanSettings withPickerDefaults() {
+        ScanSettings settings = mWithPickerDefaults;
+        if (settings == null) {
+            try {
+                JSONObject options = new JSONObject(PICKER_DEFAULTS);
+                // Options given under their old names take precedence over the defaults.
+                if (mOptions.has("scanningHotspotHeight")) {
+                    options.remove("scanningHotSpotHeight");
+                }
+                if (mOptions.has("viewfinderDimension")) {
+                    options.remove("viewfinderSize");
+                }
+                Iterator<?> keys = mOptions.keys();
+                while (keys.hasNext()) {
+                    String key = (String) keys.next();
+                    options.put(key, mOptions.opt(key));
+                }
+                synchronized (sCache) {
+                    settings = new ScanSettings(sNextId++, mAppKey, options);
+                }
+            } catch (JSONException e) {
+                // The options were valid already, as are the defaults.
+                throw new IllegalStateException(e);
+            }
+            mWithPickerDefaults = settings;
+        }
+        return settings;
+    }
+    
+    /**
+     * Puts the options that differ from the previous settings to effect on the given picker, which 
+     * has the previous settings applied already. Setters of unchanged options are not called.
+     */
+    void applyChanges(ScanditSDK picker, ScanSettings previous) {
+        ScanditSDKOverlay overlay = picker.getOverlayView();
+        
+        if (changed(SEARCH_BAR, previous)) {
+            overlay.showSearchBar(get(SEARCH_BAR));
+        }
+        
+        if (changed(SCANNING_1D, previous)) {
+            picker.set1DScanningEnabled(get(SCANNING_1D));
+        }
+        if (changed(SCANNING_2D, previous)) {
+            picker.set2DScanningEnabled(get(SCANNING_2D));
+        }
+        
+        if (changed(EAN13_AND_UPC12, previous)) {
+            picker.setEan13AndUpc12Enabled(get(EAN13_AND_UPC12));
+        }
+        if (changed(EAN8, previous)) {
+            picker.setEan8Enabled(get(EAN8));
+        }
+        if (changed(UPCE, previous)) {
+            picker.setUpceEnabled(get(UPCE));
+        }
+        if (changed(CODE39, previous)) {
+            picker.setCode39Enabled(get(CODE39));
+        }
+        if (changed(CODE128, previous)) {
+            picker.setCode128Enabled(get(CODE128));
+        }
+        if (changed(ITF, previous)) {
+            picker.setItfEnabled(get(ITF));
+        }
+        if (changed(QR, previous)) {
+            picker.setQrEnabled(get(QR));
+        }
+        if (changed(DATA_MATRIX, previous)) {
+            picker.setDataMatrixEnabled(get(DATA_MATRIX));
+        }
+        if (changed(MSI_PLESSEY, previous)) {
+            picker.setMsiPlesseyEnabled(get(MSI_PLESSEY));
+        }
+        if (mMsiPlesseyChecksum >= 0 && mMsiPlesseyChecksum != previous.mMsiPlesseyChecksum) {
+            picker.setMsiPlesseyChecksumType(mMsiPlesseyChecksum);
+        }
+        
+        if (changed(INVERSE_RECOGNITION, previous)) {
+            picker.setInverseRecognitionEnabled(get(INVERSE_RECOGNITION));
+        }
+        if (changed(MICRO_DATA_MATRIX, previous)) {
+            picker.setMicroDataMatrixEnabled(get(MICRO_DATA_MATRIX));
+        }
+        if (changed(FORCE_2D, previous)) {
+            picker.force2dRecognition(get(FORCE_2D));
+        }
+        
+        if (changed(mHotSpot, previous.mHotSpot)) {
+            picker.setScanningHotSpot(mHotSpot[0], mHotSpot[1]);
+        }
+        if (!Float.isNaN(mHotSpotHeight) && mHotSpotHeight != previous.mHotSpotHeight) {
+            picker.setScanningHotSpotHeight(mHotSpotHeight);
+        }
+        if (get(IGNORE_PREVIEW_ASPECT_RATIO) && !previous.get(IGNORE_PREVIEW_ASPECT_RATIO)) {
+            picker.ignorePreviewAspectRatio();
+        }
+        
+        if (changed(TITLE_BAR, previous)) {
+            overlay.showTitleBar(get(TITLE_BAR));
+        }
+        if (changed(TOOL_BAR, previous)) {
+            overlay.showToolBar(get(TOOL_BAR));
+        }
+        if (changed(BEEP, previous)) {
+            overlay.setBeepEnabled(get(BEEP));
+        }
+        if (changed(VIBRATE, previous)) {
+            overlay.setVibrateEnabled(get(VIBRATE));
+        }
+        if (changed(TORCH, previous)) {
+            overlay.setTorchEnabled(get(TORCH));
+        }
+        if (changed(mTorchButton, previous.mTorchButton)) {
+            overlay.setTorchButtonPosition(mTorchButton[0], mTorchButton[1],
+                    (int) mTorchButton[2], (int) mTorchButton[3]);
+        }
+        
+        if (mCameraSwitchVisibility >= 0 
+                && mCameraSwitchVisibility != previous.mCameraSwitchVisibility) {
+            overlay.setCameraSwitchVisibility(mCameraSwitchVisibility);
+        }
+        if (changed(mCameraSwitchButton, previous.mCameraSwitchButton)) {
+            overlay.setCameraSwitchButtonPosition(mCameraSwitchButton[0], mCameraSwitchButton[1],
+                    (int) mCameraSwitchButton[2], (int) mCameraSwitchButton[3]);
+        }
+        
+        String[] texts = mTexts;
+        if (textChanged(TEXT_INITIAL_SCAN_SCREEN_STATE, previous)) {
+            overlay.setTextForInitialScanScreenState(texts[TEXT_INITIAL_SCAN_SCREEN_STATE]);
+        }
+        if (textChanged(TEXT_BARCODE_PRESENCE_DETECTED, previous)) {
+            overlay.setTextForBarcodePresenceDetected(texts[TEXT_BARCODE_PRESENCE_DETECTED]);
+        }
+        if (textChanged(TEXT_BARCODE_DECODING_IN_PROGRESS, previous)) {
+            overlay.setTextForBarcodeDecodingInProgress(texts[TEXT_BARCODE_DECODING_IN_PROGRESS]);
+        }
+        if (textChanged(TITLE_MESSAGE, previous)) {
+            overlay.setTitleMessage(texts[TITLE_MESSAGE]);
+        }
+        if (textChanged(LEFT_BUTTON_CAPTION, previous)) {
+            overlay.setLeftButtonCaption(texts[LEFT_BUTTON_CAPTION]);
+        }
+        if (textChanged(LEFT_BUTTON_CAPTION_KEYPAD, previous)) {
+            overlay.setLeftButtonCaptionWhenKeypadVisible(texts[LEFT_BUTTON_CAPTION_KEYPAD]);
+        }
+        if (textChanged(RIGHT_BUTTON_CAPTION, previous)) {
+            overlay.setRightButtonCaption(texts[RIGHT_BUTTON_CAPTION]);
+        }
+        if (textChanged(RIGHT_BUTTON_CAPTION_KEYPAD, previous)) {
+            overlay.setRightButtonCaptionWhenKeypadVisible(texts[RIGHT_BUTTON_CAPTION_KEYPAD]);
+        }
+        if (textChanged(SEARCH_BAR_PLACEHOLDER, previous)) {
+            overlay.setSearchBarPlaceholderText(texts[SEARCH_BAR_PLACEHOLDER]);
+        }
+        
+        if (changed(mViewfinderDimension, previous.mViewfinderDimension)) {
+            float[] d = mViewfinderDimension;
+            if (d.length == 2) {
+                overlay.setViewfinderDimension(d[0], d[1]);
+            } else {
+                overlay.setViewfinderDimension(d[0], d[1], d[2], d[3]);
+            }
+        }
+        if (changed(VIEWFINDER_TEXT_HOOK, previous)) {
+            overlay.drawViewfinderTextHook(get(VIEWFINDER_TEXT_HOOK));
+        }
+        if (changed(mViewfinderColor, previous.mViewfinderColor)) {
+            overlay.setViewfinderColor(
+                    mViewfinderColor[0], mViewfinderColor[1], mViewfinderColor[2]);
+        }
+        if (changed(mViewfinderDecodedColor, previous.mViewfinderDecodedColor)) {
+            overlay.setViewfinderDecodedColor(mViewfinderDecodedColor[0],
+                    mViewfinderDecodedColor[1], mViewfinderDecodedColor[2]);
+        }
+        if (changed(mLogoOffsets, previous.mLogoOffsets)) {
+            overlay.setViewfinderDimension(
+                    mLogoOffsets[0], mLogoOffsets[1], mLogoOffsets[2], mLogoOffsets[3]);
+        }
+    }
+    
+    private boolean changed(int flag, ScanSettings previous) {
+        return isSet(flag) && (!previous.isSet(flag) || get(flag) != previous.get(flag));
+    }
+    
+    private static boolean changed(float[] value, float[] previous) {
+        return value != null && !Arrays.equals(value, previous);
+    }
+    
+    private boolean textChanged(int text, ScanSettings previous) {
+        return mTexts[text] != null && !mTexts[text].equals(previous.mTexts[text]);
+    }
+    
+    private static int parseChecksum(String checksum) throws JSONException {
+        if (checksum == null) {
+            return -1;
+        } else if (checksum.equals("none")) {
+            return ScanditSDK.CHECKSUM_NONE;
+        } else if (checksum.equals("mod10")) {
+            return ScanditSDK.CHECKSUM_MOD_10;
+        } else if (checksum.equals("mod11")) {
+            return ScanditSDK.CHECKSUM_MOD_11;
+        } else if (checksum.equals("mod1010")) {
+            return ScanditSDK.CHECKSUM_MOD_1010;
+        } else if (checksum.equals("mod1110")) {
+            return ScanditSDK.CHECKSUM_MOD_1110;
+        }
+        throw new JSONException("Illegal value for msiPlesseyChecksumType: " + checksum);
+    }
+    
+    private static int parseCameraSwitchVisibility(String visibility) throws JSONException {
+        if (visibility == null) {
+            return -1;
+        } else if (visibility.equals("never")) {
+            return ScanditSDKOverlay.CAMERA_SWITCH_NEVER;
+        } else if (visibility.equals("tablet")) {
+            return ScanditSDKOverlay.CAMERA_SWITCH_ON_TABLET;
+        } else if (visibility.equals("always")) {
+            return ScanditSDKOverlay.CAMERA_SWITCH_ALWAYS;
+        }
+        throw new JSONException("Illegal value for cameraSwitchVisibility: " + visibility);
+    }
+    
+    private static int parseQueuePolicy(String policy) throws JSONException {
+        if (policy == null || policy.equals("enqueue")) {
+            return QUEUE_ENQUEUE;
+        } else if (policy.equals("reject")) {
+            return QUEUE_REJECT;
+        } else if (policy.equals("replace")) {
+            return QUEUE_REPLACE;
+        }
+        throw new JSONException("Illegal value for queuePolicy: " + policy);
+    }
+    
+    private static float parseHotSpotHeight(JSONObject options) throws JSONException {
+        // The documented spelling is scanningHotSpotHeight, older versions read scanningHotspotHeight.
+        String key = options.has("scanningHotSpotHeight") 
+                ? "scanningHotSpotHeight" : "scanningHotspotHeight";
+        if (!options.has(key)) {
+            return Float.NaN;
+        }
+        double height = options.optDouble(key, Double.NaN);
+        if (Double.isNaN(height) || height < 0 || height > 0.5) {
+            throw new JSONException("Illegal value for " + key + ": " + options.opt(key));
+        }
+        return (float) height;
+    }
+    
+    private static int parseInt(JSONObject options, String key, int defaultValue, int minimum)
+            throws JSONException {
+        if (!options.has(key)) {
+            return defaultValue;
+        }
+        int value = options.optInt(key, Integer.MIN_VALUE);
+        if (value < minimum) {
+            throw new JSONException("Illegal value for " + key + ": " + options.opt(key));
+        }
+        return value;
+    }
+    
+    /**
+     * Parses an option of the form "a/b/c/d" into its numbers, or returns null if it is not given.
+     */
+    private static float[] parseFloats(JSONObject options, String key, String separator, 
+                                       int minCount, int maxCount) throws JSONException {
+        String value = options.optString(key, null);
+        if (value == null) {
+            return null;
+        }
+        return parseFloats(key, value, separator, minCount, maxCount);
+    }
+    
+    /**
+     * Parses a frame of the form "x/y/width/height".
+     */
+    static float[] parseFrame(String value) throws JSONException {
+        return parseFloats("frame", value, "[/]", 4, 4);
+    }
+    
+    private static float[] parseFloats(String key, String value, String separator, 
+                                       int minCount, int maxCount) throws JSONException {
+        String[] split = value.split(separator);
+        if (split.length != minCount && split.length != maxCount) {
+            throw new JSONException("Illegal value for " + key + ": " + value);
+        }
+        float[] result = new float[split.length];
+        try {
+            for (int i = 0; i < split.length; i++) {
+                result[i] = Float.parseFloat(split[i].trim());
+            }
+        } catch (NumberFormatException e) {
+            throw new JSONException("Illegal value for " + key + ": " + value);
+        }
+        return result;
+    }
+    
+    /**
+     * Parses a color of the form "RRGGBB" into its components, or returns null if it is not given.
+     */
+    private static float[] parseColor(String color) throws JSONException {
+        if (color == null) {
+            return null;
+        }
+        if (color.length() == 6) {
+            try {
+                float r = ((float) Integer.parseInt(color.substring(0, 2), 16)) / 256.0f;
+                float g = ((float) Integer.parseInt(color.substring(2, 4), 16)) / 256.0f;
+                float b = ((float) Integer.parseInt(color.substring(4, 6), 16)) / 256.0f;
+                return new float[] { r, g, b };
+            } catch (NumberFormatException e) {
+                // Reported below.
+            }
+        }
+        throw new JSONException("Illegal color: " + color);
+    }
+}
@@ -0,0 +1,473 @@
+//
+//  Copyright 2010 Mirasense AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+//
+//
+
+package com.mirasense.scanditsdk.plugin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+import org.apache.cordova.PluginResult.Status;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.util.Log;
+
+/**
+ * Posts scanned codes to a backend in gzip-compressed batches, such that the codes reach the 
+ * backend while the web view is busy and a flaky network costs retries instead of scans.
+ * 
+ * A batch is sent as soon as batchSize codes are queued or the oldest queued code has waited 
+ * batchInterval milliseconds. Only one batch is in flight at a time, so batches arrive in order. 
+ * Failed attempts are retried with exponential backoff and jitter. Client errors other than 408 
+ * and 429 are not retried. The queue holds at most maxQueueSize codes, including the batch in 
+ * flight. Codes added while it is full are dropped and counted, the status callback is told once 
+ * per overflow.
+ * 
+ * The body is {"session": id, "batch": n, "metadata": {...}, "scans": [{"barcode": code, 
+ * "symbology": name, "timestamp": millis}, ...]}. Session and batch stay the same across retries
+ * of a batch, which lets the backend drop batches it already received.
+ * 
+ * All queueing and network access happens on a single thread, adding a code never blocks.
+ */
+final class ScanUploader {
+    
+    private final URL mUrl;
+    private final JSONObject mHeaders;
+    private final JSONObject mMetadata;
+    private final int mBatchSize;
+    private final long mBatchInterval;
+    private final int mMaxQueueSize;
+    private final int mMaxRetries;
+    private final long mInitialBackoff;
+    private final long mMaxBackoff;
+    private final int mTimeout;
+    private final String mSession = UUID.randomUUID().toString();
+    private final CallbackContext mCallbackContext;
+    private final ScheduledThreadPoolExecutor mExecutor;
+    private final Runnable mFlush = new Runnable() {
+        public void run() {
+            mFlushScheduled = false;
+            if (!mStopped && mBatch == null && !mPending.isEmpty()) {
+                startBatch();
+            }
+        }
+    };
+    private final Runnable mRetry = new Runnable() {
+        public void run() {
+            if (!mStopped && mBatch != null) {
+                send();
+            }
+        }
+    };
+    
+    // Codes accepted and not yet delivered or given up on.
+    private final AtomicInteger mQueued = new AtomicInteger();
+    private final AtomicLong mDropped = new AtomicLong();
+    private final AtomicBoolean mOverflowReported = new AtomicBoolean();
+    private volatile boolean mClosed;
+    private volatile long mDelivered;
+    private volatile long mFailed;
+    private volatile long mRetries;
+    
+    // Only accessed on the executor.
+    private final ArrayDeque<Scan> mPending = new ArrayDeque<Scan>();
+    private final ByteArrayOutputStream mBody = new ByteArrayOutputStream(8 * 1024);
+    private final Random mRandom = new Random();
+    private List<Scan> mBatch;
+    private long mBatchId;
+    private int mAttempt;
+    private boolean mFlushScheduled;
+    private boolean mStopped;
+    
+    
+    /**
+     * @param config {"url": endpoint, "headers": {...}, "metadata": {...}, "batchSize": 50, 
+     *        "batchInterval": 2000, "maxQueueSize": 1000, "maxRetries": 8, "initialBackoff": 1000,
+     *        "maxBackoff": 60000, "timeout": 15000}, only url is required.
+     * @param callbackContext Receives a status object for every batch and overflow, it is kept 
+     *        until the uploader is stopped.
+     * @throws JSONException If the url is missing or a value is illegal, such as a header with a
+     *         line break.
+     */
+    ScanUploader(JSONObject config, CallbackContext callbackContext) throws JSONException {
+        try {
+            mUrl = new URL(config.getString("url"));
+        } catch (MalformedURLException e) {
+            throw new JSONException("Illegal value for url: " + config.opt("url"));
+        }
+        if (!mUrl.getProtocol().equals("http") && !mUrl.getProtocol().equals("https")) {
+            throw new JSONException("Illegal value for url: " + config.opt("url"));
+        }
+        mHeaders = config.optJSONObject("headers");
+        if (mHeaders != null) {
+            Iterator<?> names = mHeaders.keys();
+            while (names.hasNext()) {
+                String name = (String) names.next();
+                if (name.isEmpty() || hasLineBreak(name) 
+                        || hasLineBreak(mHeaders.optString(name))) {
+                    throw new JSONException("Illegal value for headers: " + name);
+                }
+            }
+        }
+        mMetadata = config.optJSONObject("metadata");
+        mBatchSize = parseInt(config, "batchSize", 50, 1);
+        mBatchInterval = parseInt(config, "batchInterval", 2000, 0);
+        mMaxQueueSize = parseInt(config, "maxQueueSize", 1000, mBatchSize);
+        mMaxRetries = parseInt(config, "maxRetries", 8, 0);
+        mInitialBackoff = parseInt(config, "initialBackoff", 1000, 1);
+        mMaxBackoff = parseInt(config, "maxBackoff", 60000, (int) mInitialBackoff);
+        mTimeout = parseInt(config, "timeout", 15000, 1);
+        mCallbackContext = callbackContext;
+        
+        mExecutor = new ScheduledThreadPoolExecutor(1);
+        mExecutor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+    
+    private static boolean hasLineBreak(String value) {
+        return value.indexOf('\r') >= 0 || value.indexOf('\n') >= 0;
+    }
+    
+    private static int parseInt(JSONObject config, String name, int defaultValue, int min) 
+            throws JSONException {
+        if (!config.has(name)) {
+            return defaultValue;
+        }
+        int value = config.getInt(name);
+        if (value < min) {
+            throw new JSONException("Illegal value for " + name + ": " + value);
+        }
+        return value;
+    }
+    
+    /**
+     * Queues a code for upload, timestamped with the current time.
+     * 
+     * @return False if the code was dropped because the queue is full or the uploader stopped.
+     */
+    boolean add(final String barcode, final String symbology) {
+        if (mClosed) {
+            return false;
+        }
+        if (mQueued.incrementAndGet() > mMaxQueueSize) {
+            mQueued.decrementAndGet();
+            mDropped.incrementAndGet();
+            if (mOverflowReported.compareAndSet(false, true)) {
+                try {
+                    mExecutor.execute(new Runnable() {
+                        public void run() {
+                            report("overflow", 0, 0, null, 0);
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    // Stopped meanwhile, the final status holds the count.
+                }
+            }
+            return false;
+        }
+        final long time = System.currentTimeMillis();
+        try {
+            mExecutor.execute(new Runnable() {
+                public void run() {
+                    mPending.add(new Scan(barcode, symbology, time));
+                    sendIfDue();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Stopped after the check above.
+            mQueued.decrementAndGet();
+            mDropped.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Makes a last attempt to send the queued codes, without retries, then calls the callback with
+     * the final status and releases the status callback.
+     * 
+     * @param callbackContext Called with the status, or null.
+     */
+    void stop(final CallbackContext callbackContext) {
+        mClosed = true;
+        mExecutor.execute(new Runnable() {
+            public void run() {
+                mStopped = true;
+                if (mBatch != null) {
+                    send();
+                }
+                while (!mPending.isEmpty()) {
+                    startBatch();
+                }
+                if (callbackContext != null) {
+                    try {
+                        callbackContext.success(getStatus());
+                    } catch (JSONException e) {
+                        callbackContext.error(e.getMessage());
+                    }
+                }
+                mCallbackContext.sendPluginResult(new PluginResult(Status.NO_RESULT));
+                mExecutor.shutdown();
+            }
+        });
+    }
+    
+    /**
+     * Returns {"queued": n, "delivered": n, "failed": n, "dropped": n, "retries": n}, the codes 
+     * waiting, delivered, given up on after the last retry, dropped because the queue was full, 
+     * and the number of retried attempts.
+     */
+    JSONObject getStatus() throws JSONException {
+        JSONObject status = new JSONObject();
+        status.put("queued", mQueued.get());
+        status.put("delivered", mDelivered);
+        status.put("failed", mFailed);
+        status.put("dropped", mDropped.get());
+        status.put("retries", mRetries);
+        return status;
+    }
+    
+    private void sendIfDue() {
+        if (mStopped || mBatch != null || mPending.isEmpty()) {
+            // The next batch is started once the one in flight is done.
+            return;
+        }
+        if (mPending.size() >= mBatchSize || mBatchInterval == 0) {
+            startBatch();
+        } else if (!mFlushScheduled) {
+            mFlushScheduled = true;
+            mExecutor.schedule(mFlush, mBatchInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    private void startBatch() {
+        int size = Math.min(mPending.size(), mBatchSize);
+        mBatch = new ArrayList<Scan>(size);
+        for (int i = 0; i < size; i++) {
+            mBatch.add(mPending.poll());
+        }
+        mBatchId++;
+        mAttempt = 0;
+        send();
+    }
+    
+    /**
+     * Makes an attempt to send the batch in flight and schedules the retry if it fails.
+     */
+    private void send() {
+        int responseCode;
+        String error = null;
+        try {
+            responseCode = post();
+            if (responseCode < 200 || responseCode >= 300) {
+                error = "HTTP " + responseCode;
+            }
+        } catch (IOException e) {
+            responseCode = -1;
+            error = e.toString();
+        } catch (RuntimeException e) {
+            // The connection rejected the request, which a retry would not change.
+            responseCode = 0;
+            error = e.toString();
+        }
+        
+        int size = mBatch.size();
+        if (error == null) {
+            mDelivered += size;
+            finishBatch("delivered", null);
+            return;
+        }
+        boolean retry = responseCode < 0 || responseCode == 408 || responseCode == 429 
+                || responseCode >= 500;
+        if (retry && mAttempt < mMaxRetries && !mStopped) {
+            long delay = backoff(mAttempt++);
+            mRetries++;
+            report("retrying", mBatchId, size, error, delay);
+            mExecutor.schedule(mRetry, delay, TimeUnit.MILLISECONDS);
+        } else {
+            Log.w("ScanditSDK", "Giving up on batch " + mBatchId + ": " + error);
+            mFailed += size;
+            finishBatch("failed", error);
+        }
+    }
+    
+    private void finishBatch(String event, String error) {
+        int size = mBatch.size();
+        mBatch = null;
+        mQueued.addAndGet(-size);
+        mOverflowReported.set(false);
+        report(event, mBatchId, size, error, 0);
+        sendIfDue();
+    }
+    
+    /**
+     * Returns the delay before the given retry: initialBackoff doubled per retry up to maxBackoff,
+     * of which a random part up to a half is taken off, such that devices that lost the network 
+     * together do not retry together.
+     */
+    private long backoff(int retry) {
+        long delay = mInitialBackoff << Math.min(retry, 30);
+        if (delay > mMaxBackoff || delay <= 0) {
+            delay = mMaxBackoff;
+        }
+        return delay - (long) (mRandom.nextDouble() * (delay / 2));
+    }
+    
+    /**
+     * Posts the batch in flight and returns the response code. The body is compressed into a 
+     * buffer that is reused for every batch.
+     */
+    private int post() throws IOException {
+        mBody.reset();
+        Writer writer = new OutputStreamWriter(new GZIPOutputStream(mBody), "UTF-8");
+        try {
+            writer.write(batchToJSON().toString());
+        } finally {
+            writer.close();
+        }
+        
+        HttpURLConnection connection = (HttpURLConnection) mUrl.openConnection();
+        try {
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setConnectTimeout(mTimeout);
+            connection.setReadTimeout(mTimeout);
+            connection.setRequestProperty("Content-Type", "application/json; charset=utf-8");
+            connection.setRequestProperty("Content-Encoding", "gzip");
+            if (mHeaders != null) {
+                Iterator<?> names = mHeaders.keys();
+                while (names.hasNext()) {
+                    String name = (String) names.next();
+                    connection.setRequestProperty(name, mHeaders.optString(name));
+                }
+            }
+            connection.setFixedLengthStreamingMode(mBody.size());
+            OutputStream out = connection.getOutputStream();
+            try {
+                mBody.writeTo(out);
+            } finally {
+                out.close();
+            }
+            int responseCode = connection.getResponseCode();
+            // Reading the response to the end lets the connection be reused for the next batch.
+            drain(responseCode < 400 ? connection.getInputStream() : connection.getErrorStream());
+            return responseCode;
+        } catch (IOException e) {
+            connection.disconnect();
+            throw e;
+        }
+    }
+    
+    private static void drain(InputStream in) throws IOException {
+        if (in == null) {
+            return;
+        }
+        try {
+            byte[] buffer = new byte[1024];
+            while (in.read(buffer) >= 0) {
+                // Discard.
+            }
+        } finally {
+            in.close();
+        }
+    }
+    
+    private JSONObject batchToJSON() {
+        try {
+            JSONArray scans = new JSONArray();
+            for (Scan scan : mBatch) {
+                JSONObject entry = new JSONObject();
+                entry.put("barcode", scan.mBarcode);
+                entry.put("symbology", scan.mSymbology);
+                entry.put("timestamp", scan.mTime);
+                scans.put(entry);
+            }
+            JSONObject body = new JSONObject();
+            body.put("session", mSession);
+            body.put("batch", mBatchId);
+            body.putOpt("metadata", mMetadata);
+            body.put("scans", scans);
+            return body;
+        } catch (JSONException e) {
+            // Can not happen with string keys and finite values.
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    /**
+     * Sends {"event": "delivered" | "retrying" | "failed" | "overflow", "batch": n, "count": n, 
+     * "error": message, "retryIn": millis} together with the counts of getStatus to the status 
+     * callback.
+     */
+    private void report(String event, long batch, int count, String error, long retryIn) {
+        try {
+            JSONObject status = getStatus();
+            status.put("event", event);
+            if (batch > 0) {
+                status.put("batch", batch);
+                status.put("count", count);
+            }
+            status.putOpt("error", error);
+            if (retryIn > 0) {
+                status.put("retryIn", retryIn);
+            }
+            PluginResult result = new PluginResult(Status.OK, status);
+            result.setKeepCallback(true);
+            mCallbackContext.sendPluginResult(result);
+        } catch (JSONException e) {
+            Log.e("ScanditSDK", "Could not report the upload status.", e);
+        }
+    }
+    
+    /**
+     * A code waiting for upload.
+     */
+    private static final class Scan {
+        
+        final String mBarcode;
+        final String mSymbology;
+        final long mTime;
+        
+        Scan(String barcode, String symbology, long time) {
+            mBarcode = barcode;
+            mSymbology = symbology;
+            mTime = time;
+        }
+    }
+}
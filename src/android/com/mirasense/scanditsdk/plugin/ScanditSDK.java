@@ -18,7 +18,15 @@
 
 package com.mirasense.scanditsdk.plugin;
 
-import java.util.Iterator;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.apache.cordova.CallbackContext;
 import org.apache.cordova.CordovaPlugin;
@@ -32,24 +40,160 @@ import android.content.Intent;
 import android.util.Log;
 
 
-public class ScanditSDK extends CordovaPlugin {
+public class ScanditSDK extends CordovaPlugin implements EmbeddedBarcodePicker.Listener {
     
     public static final String SCAN = "scan";
+    public static final String STOP = "stop";
+    public static final String PREPARE = "prepare";
+    public static final String RELEASE = "release";
+    public static final String SHOW = "show";
+    public static final String HIDE = "hide";
+    public static final String RESIZE = "resize";
+    public static final String UPDATE_SETTINGS = "updateSettings";
+    public static final String GET_METRICS = "getMetrics";
+    public static final String RESET_METRICS = "resetMetrics";
+    public static final String LOAD_CATALOG = "loadCatalog";
+    public static final String BUILD_CATALOG = "buildCatalog";
+    public static final String CLOSE_CATALOG = "closeCatalog";
+    public static final String SCAN_IMAGES = "scanImages";
+    public static final String READ_JOURNAL = "readJournal";
+    public static final String TRUNCATE_JOURNAL = "truncateJournal";
+    public static final String GET_SYMBOLOGY_STATS = "getSymbologyStats";
+    public static final String LOAD_MANIFEST = "loadManifest";
+    public static final String GET_MANIFEST_STATUS = "getManifestStatus";
+    public static final String CLEAR_MANIFEST = "clearManifest";
+    public static final String START_UPLOAD = "startUpload";
+    public static final String STOP_UPLOAD = "stopUpload";
+    public static final String GET_UPLOAD_STATUS = "getUploadStatus";
     
-    private CallbackContext mCallbackContext;
+    // Images are downsampled to at most this many pixels unless the maxImagePixels option is set.
+    private static final int DEFAULT_MAX_IMAGE_PIXELS = 2000000;
     
+    // Longest time a scan waits for the preload before it opens the scan screen anyway.
+    private static final long PRELOAD_WAIT_MILLIS = 1000;
+    
+    private static final String JOURNAL_FILE = "ScanditSDK.journal";
+    private static final int DEFAULT_JOURNAL_PAGE_SIZE = 100;
+    
+    private static volatile StillImageDecoder sStillImageDecoder;
+    
+    // Scans waiting for their result, by the request code of their scan screen.
+    private final ConcurrentHashMap<Integer, ScanRequest> mScanRequests = 
+            new ConcurrentHashMap<Integer, ScanRequest>();
+    // Guarded by this.
+    private final LinkedList<ScanRequest> mQueuedScans = new LinkedList<ScanRequest>();
+    private ScanRequest mActiveScan;
+    private int mLastRequestCode;
+    private volatile ContinuousDelivery mContinuousDelivery;
+    private boolean mContinuousInActivity;
+    private ExecutorService mResultExecutor;
+    private EmbeddedBarcodePicker mEmbeddedPicker;
+    private volatile ProductCatalog mCatalog;
+    private volatile ExpectedManifest mManifest;
+    private ScanJournal mJournal;
+    private volatile ScanUploader mUploader;
+    
+    /**
+     * Starts loading the native library in the background if the ScanditPreload preference is 
+     * set, which shortens the time until the first scan screen is up. The ScanditLibrary preference
+     * names the library, it is set by plugin.xml next to the library it copies.
+     */
     @Override
-    public boolean execute(String action, JSONArray args, CallbackContext callbackContext) {
-        mCallbackContext = callbackContext;
-        PluginResult result = null;
-
+    protected void pluginInitialize() {
+        if (preferences.getBoolean("ScanditPreload", false)) {
+            NativePreloader.start(preferences.getString("ScanditLibrary", 
+                    NativePreloader.DEFAULT_LIBRARY));
+        }
+    }
+    
+    @Override
+    public boolean execute(String action, String rawArgs, CallbackContext callbackContext) 
+            throws JSONException {
         if (action.equals(SCAN)) {
-            scan(args);
-            result = new PluginResult(Status.NO_RESULT);
-            result.setKeepCallback(true);
+            // Scans work on the raw arguments such that repeated options are only parsed once.
+            scan(rawArgs, callbackContext, ScanMetrics.beginScan());
+            return true;
+        } else if (action.equals(SHOW)) {
+            show(rawArgs, callbackContext, ScanMetrics.beginScan());
+            return true;
+        }
+        return super.execute(action, rawArgs, callbackContext);
+    }
+    
+    @Override
+    public boolean execute(String action, JSONArray args, CallbackContext callbackContext) {
+        if (action.equals(STOP)) {
+            stop();
+            callbackContext.success();
+            return true;
+        } else if (action.equals(PREPARE)) {
+            prepare(args, callbackContext);
+            return true;
+        } else if (action.equals(RELEASE)) {
+            release(callbackContext);
+            return true;
+        } else if (action.equals(HIDE)) {
+            hide(callbackContext);
+            return true;
+        } else if (action.equals(RESIZE)) {
+            resize(args, callbackContext);
+            return true;
+        } else if (action.equals(UPDATE_SETTINGS)) {
+            updateSettings(args, callbackContext);
+            return true;
+        } else if (action.equals(GET_METRICS)) {
+            getMetrics(callbackContext);
+            return true;
+        } else if (action.equals(RESET_METRICS)) {
+            ScanMetrics.reset();
+            callbackContext.success();
+            return true;
+        } else if (action.equals(LOAD_CATALOG)) {
+            loadCatalog(args, callbackContext);
+            return true;
+        } else if (action.equals(BUILD_CATALOG)) {
+            buildCatalog(args, callbackContext);
+            return true;
+        } else if (action.equals(SCAN_IMAGES)) {
+            scanImages(args, callbackContext);
+            return true;
+        } else if (action.equals(READ_JOURNAL)) {
+            readJournal(args, callbackContext);
+            return true;
+        } else if (action.equals(TRUNCATE_JOURNAL)) {
+            truncateJournal(args, callbackContext);
+            return true;
+        } else if (action.equals(GET_SYMBOLOGY_STATS)) {
+            getSymbologyStats(callbackContext);
+            return true;
+        } else if (action.equals(LOAD_MANIFEST)) {
+            loadManifest(args, callbackContext);
+            return true;
+        } else if (action.equals(GET_MANIFEST_STATUS)) {
+            getManifestStatus(callbackContext);
+            return true;
+        } else if (action.equals(CLEAR_MANIFEST)) {
+            mManifest = null;
+            callbackContext.success();
+            return true;
+        } else if (action.equals(START_UPLOAD)) {
+            startUpload(args, callbackContext);
+            return true;
+        } else if (action.equals(STOP_UPLOAD)) {
+            stopUpload(callbackContext);
+            return true;
+        } else if (action.equals(GET_UPLOAD_STATUS)) {
+            getUploadStatus(callbackContext);
+            return true;
+        } else if (action.equals(CLOSE_CATALOG)) {
+            ProductCatalog catalog = mCatalog;
+            mCatalog = null;
+            if (catalog != null) {
+                catalog.close();
+            }
+            callbackContext.success();
             return true;
         } else {
-            result = new PluginResult(Status.INVALID_ACTION);
             callbackContext.error("Invalid Action");
             return false;
         }
@@ -139,6 +283,20 @@ public class ScanditSDK extends CordovaPlugin {
      * to decrease the quality of the recognition to keep the speed at an 
      * acceptable level.
      *
+     * adaptiveHotSpot: false
+     * Adapts the hot spot height to the time it takes to decode a code: it is raised while codes
+     * take longer than adaptiveHotSpotTargetLatency, which makes them easier to aim at, and 
+     * lowered while they decode well within it, which lets the engine keep a higher recognition
+     * quality. Every different code counts once. The height learned is remembered for the device 
+     * model and used as the starting point of later scans. Overrides scanningHotSpotHeight.
+     *
+     * adaptiveHotSpotRange: "0.1/0.5" (minHeight/maxHeight)
+     * Bounds of the hot spot height when adaptiveHotSpot is enabled, between 0.0 and 0.5.
+     *
+     * adaptiveHotSpotTargetLatency: 1000
+     * Time in milliseconds from the start of scanning, or from the previous code in continuous 
+     * mode, in which adaptiveHotSpot aims to decode a code.
+     *
      * ignorePreviewAspectRatio: false
      * Normally the picker adjusts to the aspect ratio of the preview image. If
      * this is called, it will no longer do this.
@@ -217,62 +375,1029 @@ public class ScanditSDK extends CordovaPlugin {
      * 
      * viewfinderDecodedColor: "00FF00"
      * Sets the color of the viewfinder once the barcode has been recognized.
+     *
+     * continuousMode: false
+     * Keeps the scan screen open after a code has been recognized. Every scanned code is reported
+     * to the success callback until the "stop" action is called or the user cancels the scan
+     * screen, in which case the failure callback is called with "Canceled".
+     *
+     * duplicateFilterWindow: 0
+     * Time in milliseconds during which a code that was already reported in continuous mode is not
+     * reported again. Every recognition of the code restarts the time. 0 reports every recognition.
+     *
+     * duplicateFilterCacheSize: 100
+     * Number of distinct codes remembered for the duplicate filter. The least recently seen codes
+     * are forgotten first.
+     *
+     * batchSize: 1
+     * Maximum number of results reported at once in continuous mode. If larger than 1, the success
+     * callback is called with an array of results instead of a single result.
+     *
+     * batchInterval: 250
+     * Only used if batchSize is larger than 1. Maximum time in milliseconds a result waits before
+     * its batch is reported even though it is not full. 0 waits until the batch is full or the 
+     * scan ends.
+     *
+     * validateChecksums: false
+     * Verifies the check digits of EAN-13/UPC-A, EAN-8, UPC-E, ITF-14 and MSI Plessey codes (the 
+     * latter with msiPlesseyChecksumType) before they are reported. Codes with wrong check digits
+     * are dropped and scanning continues.
+     *
+     * gs1: false
+     * Splits GS1-128, GS1 DataMatrix and GS1 QR codes into their application identifiers and adds 
+     * them to the result as its fifth entry, an object from AI to value, e.g. 
+     * {"01": "09506000134352", "17": "2027-12-31", "3103": 1.25}. Dates are returned as 
+     * "YYYY-MM-DD", data with an implied decimal point as a number. Only codes marked as GS1 by 
+     * their symbology identifier ("]C1", "]d2" or "]Q3") or a leading FNC1 ("\u001d") are 
+     * parsed, the leading FNC1 is kept in the reported code. The object is null for other codes 
+     * and for codes that are not valid GS1 element strings.
+     *
+     * binaryResult: false
+     * Reports the code as an ArrayBuffer holding its bytes instead of as a string, and does not 
+     * trim it, such that large or binary QR and Data Matrix payloads arrive unchanged. The picker 
+     * returns binary content as one character per byte, so codes whose characters are all up to 
+     * U+00FF are encoded as ISO-8859-1, others as UTF-8. The other four entries of the result 
+     * follow as they are, null included, so the entries keep their positions. Results are not 
+     * batched, batchSize is ignored.
+     *
+     * autoProfile: false
+     * Counts the symbologies decoded per autoProfileContext and, once there is enough history, 
+     * only enables those of the enabled symbologies that make up autoProfileCoverage of it. If 
+     * nothing is decoded for autoProfileFallback milliseconds, the others are enabled again. The 
+     * counts are returned by the "getSymbologyStats" action.
+     *
+     * autoProfileContext: "default"
+     * Name of the history the autoProfile option counts in, e.g. one per step of a workflow.
+     *
+     * autoProfileCoverage: 0.999
+     * Share of the decoded codes the symbologies kept by autoProfile have to account for.
+     *
+     * autoProfileFallback: 3000
+     * Time in milliseconds without a decoded code after which autoProfile enables all symbologies.
+     *
+     * journal: false
+     * Appends every reported code to the scan journal on the device, with a sequence number and 
+     * timestamp, before it is sent to Java Script. The journal is read with the "readJournal" 
+     * action and shrunk with "truncateJournal", e.g. [nextSeq] to drop everything read so far.
+     *
+     * upload: false
+     * Queues every reported code for the uploader started with the "startUpload" action, which 
+     * posts them to the backend in batches. Ignored while no uploader runs.
+     *
+     * idleTimeout: 0
+     * Time in milliseconds without a decoded code after which scanning is stopped and started 
+     * according to idleDutyCycle, which cuts the frames processed and the heat in long sessions.
+     * The picker does not report whether a code is in view, so any decoded code, also a rejected
+     * or duplicate one, counts as presence and returns to scanning continuously. 0 always scans 
+     * continuously. The durations of idle periods are reported by getMetrics as "idlePeriod".
+     *
+     * idleDutyCycle: "500/1500" (on/off)
+     * Milliseconds of scanning and of not scanning in turn while idle. Restarting the picker 
+     * takes part of the on share.
+     *
+     * queuePolicy: "enqueue"
+     * Decides what happens if the scan action is called while the scan screen of an earlier call
+     * is still open. "enqueue" opens the scan screen again once the earlier scan is done, 
+     * "reject" calls the failure callback with "Scan already running" and "replace" closes the 
+     * earlier scan screen, calling its failure callback with "Replaced". Every call receives the
+     * result of its own scan.
+     *
+     * embeddedFrame: (covers the whole web view)
+     * Only used by the "show" action. Sets the rectangle x/y/width/height in which the picker is
+     * shown on top of the web view, in device independent (CSS) pixels, e.g. "0/0/320/240".
      */
-    private void scan(JSONArray data) {
-        Intent intent = new Intent(cordova.getActivity(), ScanditSDKActivity.class);
+    private void scan(final String rawArgs, final CallbackContext callbackContext, 
+                      final ScanMetrics.Timing timing) {
+        runInBackground(callbackContext, new Runnable() {
+            public void run() {
+                ScanSettings settings;
+                try {
+                    settings = ScanSettings.forArgs(rawArgs);
+                } catch (JSONException e) {
+                    Log.e("ScanditSDK", 
+                            "Function called through Java Script contained illegal objects.");
+                    e.printStackTrace();
+                    callbackContext.error(e.getMessage());
+                    return;
+                }
+                
+                if (!NativePreloader.awaitReady(PRELOAD_WAIT_MILLIS)) {
+                    Log.w("ScanditSDK", "Preload still in progress, opening the scan screen.");
+                }
+                
+                ScanRequest request;
+                ScanRequest replaced = null;
+                synchronized (ScanditSDK.this) {
+                    // Request codes of activity results are limited to 16 bits.
+                    mLastRequestCode = mLastRequestCode % 0xffff + 1;
+                    request = new ScanRequest(mLastRequestCode, callbackContext, settings, 
+                            timing);
+                    if (mActiveScan == null) {
+                        mActiveScan = request;
+                    } else if (settings.getQueuePolicy() == ScanSettings.QUEUE_REJECT) {
+                        callbackContext.error("Scan already running");
+                        return;
+                    } else if (settings.getQueuePolicy() == ScanSettings.QUEUE_REPLACE) {
+                        // Started as soon as the result of the replaced scan arrived.
+                        replaced = mActiveScan;
+                        mQueuedScans.addFirst(request);
+                        request = null;
+                    } else {
+                        mQueuedScans.addLast(request);
+                        request = null;
+                    }
+                }
+                if (replaced != null) {
+                    cancelScan(replaced, "Replaced");
+                }
+                if (request != null) {
+                    launchScan(request);
+                }
+            }
+        });
+    }
+    
+    /**
+     * Opens the scan screen for the request.
+     */
+    private void launchScan(ScanRequest request) {
+        ScanSettings settings = request.mSettings;
+        final CallbackContext callbackContext = request.mCallbackContext;
+        
+        // The settings stay in this process, only their id is passed to the activity.
+        final Intent intent = new Intent(cordova.getActivity(), ScanditSDKActivity.class);
+        intent.putExtra("settings", ScanSettings.launch(settings));
+        intent.putExtra("request", request.mCode);
+        final int requestCode = request.mCode;
+        mScanRequests.put(requestCode, request);
+        ScanMetrics.register(requestCode, request.mTiming);
+        
+        if (settings.get(ScanSettings.CONTINUOUS_MODE)) {
+            startContinuousDelivery(callbackContext, settings, request.mTiming);
+            synchronized (this) {
+                mContinuousInActivity = true;
+            }
+            ScanditSDKActivity.setContinuousListener(this);
+        } else {
+            ScanditSDKActivity.setResultExecutor(getResultExecutor());
+        }
+        
+        runOnUiThread(callbackContext, new Runnable() {
+            public void run() {
+                cordova.startActivityForResult(ScanditSDK.this, intent, requestCode);
+            }
+        });
+    }
+    
+    /**
+     * Completes the callback of a running scan with the error and closes its scan screen.
+     */
+    private void cancelScan(ScanRequest request, String error) {
+        if (mScanRequests.remove(request.mCode) == null) {
+            // Its result is being delivered already.
+            return;
+        }
+        if (request.mSettings.get(ScanSettings.CONTINUOUS_MODE)) {
+            ScanditSDKActivity.stopContinuousScanning();
+            finishContinuousDelivery(error);
+        } else {
+            request.mCallbackContext.error(error);
+            ScanditSDKActivity.cancelScanning(request.mCode);
+        }
+    }
+    
+    /**
+     * Called once the scan screen of the request is gone, opens the one of the next queued scan.
+     */
+    private void scanFinished(int requestCode) {
+        ScanRequest next;
+        synchronized (this) {
+            if (mActiveScan == null || mActiveScan.mCode != requestCode) {
+                return;
+            }
+            next = mQueuedScans.poll();
+            mActiveScan = next;
+        }
+        if (next != null) {
+            launchScan(next);
+        }
+    }
+    
+    /**
+     * Runs the work on Cordova's thread pool instead of the thread that called execute, such that 
+     * the web view is not blocked.
+     */
+    private void runInBackground(CallbackContext callbackContext, Runnable work) {
+        cordova.getThreadPool().execute(guard(callbackContext, work));
+    }
+    
+    private void runOnUiThread(CallbackContext callbackContext, Runnable work) {
+        cordova.getActivity().runOnUiThread(guard(callbackContext, work));
+    }
+    
+    /**
+     * Wraps the work such that the callback is completed with an error if the work fails 
+     * unexpectedly, instead of leaving Java Script waiting forever.
+     */
+    private static Runnable guard(final CallbackContext callbackContext, final Runnable work) {
+        return new Runnable() {
+            public void run() {
+                try {
+                    work.run();
+                } catch (RuntimeException e) {
+                    Log.e("ScanditSDK", "Action failed.", e);
+                    callbackContext.error(e.toString());
+                }
+            }
+        };
+    }
+    
+    /**
+     * Starts delivering the results of a scan that reports more than one code to the callback. A
+     * previous scan of that kind is finished without calling its callback again.
+     */
+    private synchronized void startContinuousDelivery(CallbackContext callbackContext, 
+                                                      ScanSettings settings, 
+                                                      ScanMetrics.Timing timing) {
+        finishContinuousDelivery(null);
+        mContinuousDelivery = new ContinuousDelivery(this, callbackContext, settings, timing,
+                getResultExecutor());
+    }
+    
+    /**
+     * Returns the executor results are created and delivered on, one after the other.
+     */
+    private synchronized ExecutorService getResultExecutor() {
+        if (mResultExecutor == null) {
+            mResultExecutor = Executors.newSingleThreadExecutor();
+        }
+        return mResultExecutor;
+    }
+    
+    /**
+     * Completes the callback of the scan that reports more than one code, once the results that are
+     * still being processed have been delivered.
+     * 
+     * @param error The error the failure callback is called with, or null to release the callback
+     *        without calling it again.
+     */
+    private synchronized void finishContinuousDelivery(String error) {
+        ContinuousDelivery delivery = mContinuousDelivery;
+        mContinuousDelivery = null;
+        mContinuousInActivity = false;
+        if (delivery != null) {
+            delivery.finish(error);
+        }
+    }
+    
+    /**
+     * Shows the picker on top of the web view instead of opening the scan screen. Takes the same
+     * arguments as the scan action, the picker's position is set through the embeddedFrame option.
+     * Calling show while the picker is shown applies the new options to it.
+     * 
+     * Like in continuous mode every scanned code is reported to the success callback, until the
+     * "hide" action is called or the user cancels, in which case the failure callback is called 
+     * with "Canceled".
+     */
+    private void show(final String rawArgs, final CallbackContext callbackContext, 
+                      final ScanMetrics.Timing timing) {
+        runInBackground(callbackContext, new Runnable() {
+            public void run() {
+                final ScanSettings settings;
+                try {
+                    settings = ScanSettings.forArgs(rawArgs);
+                } catch (JSONException e) {
+                    Log.e("ScanditSDK", 
+                            "Function called through Java Script contained illegal objects.");
+                    callbackContext.error(e.getMessage());
+                    return;
+                }
+                
+                runOnUiThread(callbackContext, new Runnable() {
+                    public void run() {
+                        if (mEmbeddedPicker == null) {
+                            mEmbeddedPicker = new EmbeddedBarcodePicker(
+                                    cordova.getActivity(), ScanditSDK.this);
+                        }
+                        if (!mEmbeddedPicker.show(settings, settings.getEmbeddedFrame(), 
+                                timing)) {
+                            callbackContext.error("Scanner not available");
+                            return;
+                        }
+                        
+                        startContinuousDelivery(callbackContext, settings, timing);
+                    }
+                });
+            }
+        });
+    }
+    
+    /**
+     * Hides the picker shown through the show action. The callback of the show action is released 
+     * without being called again.
+     */
+    private void hide(final CallbackContext callbackContext) {
+        runOnUiThread(callbackContext, new Runnable() {
+            public void run() {
+                if (mEmbeddedPicker != null && mEmbeddedPicker.isShown()) {
+                    mEmbeddedPicker.hide();
+                    finishContinuousDelivery(null);
+                }
+                callbackContext.success();
+            }
+        });
+    }
+    
+    /**
+     * Moves the picker shown through the show action. Takes the new rectangle in the same format as
+     * the embeddedFrame option, e.g. ["0/0/320/240"].
+     */
+    private void resize(JSONArray data, final CallbackContext callbackContext) {
+        final float[] frame;
         try {
-            intent.putExtra("appKey", data.getString(0));
+            frame = ScanSettings.parseFrame(data.getString(0));
+        } catch (JSONException e) {
+            callbackContext.error(e.getMessage());
+            return;
+        }
+        
+        runOnUiThread(callbackContext, new Runnable() {
+            public void run() {
+                if (mEmbeddedPicker != null) {
+                    mEmbeddedPicker.resize(frame);
+                }
+                callbackContext.success();
+            }
+        });
+    }
+    
+    /**
+     * Changes options of the running scan without restarting the camera. Takes an object with the 
+     * options to change, e.g. [{"ean13AndUpc12": false, "dataMatrix": true}], options not given 
+     * keep their current value. Only the picker's setters of options whose value actually changed
+     * are called. Applies to the picker shown through the show action if there is one, otherwise 
+     * to the scan screen.
+     * 
+     * Options the plugin evaluates when the scan starts keep their values: continuousMode, the 
+     * duplicate filter, batching, embeddedFrame, gs1, binaryResult and the checksum validation 
+     * of continuous scans. 
+     * The failure callback is called if no scan is running or an option has an illegal value.
+     */
+    private void updateSettings(JSONArray data, final CallbackContext callbackContext) {
+        final JSONObject changes = data.optJSONObject(0);
+        if (changes == null) {
+            callbackContext.error("Expected an object with the options to change");
+            return;
+        }
+        
+        runOnUiThread(callbackContext, new Runnable() {
+            public void run() {
+                boolean updated;
+                try {
+                    if (mEmbeddedPicker != null && mEmbeddedPicker.isShown()) {
+                        updated = mEmbeddedPicker.updateSettings(changes);
+                    } else {
+                        updated = ScanditSDKActivity.updateSettings(changes);
+                    }
+                } catch (JSONException e) {
+                    callbackContext.error(e.getMessage());
+                    return;
+                }
+                if (updated) {
+                    callbackContext.success();
+                } else {
+                    callbackContext.error("No scan running");
+                }
+            }
+        });
+    }
+    
+    /**
+     * Called when the user canceled the picker shown on top of the web view.
+     */
+    public void didCancelEmbedded() {
+        finishContinuousDelivery("Canceled");
+    }
+    
+    /**
+     * Constructs the barcode picker ahead of time such that following scans with the same app key
+     * and camera do not have to construct one. Takes the same arguments as the scan action, of the
+     * options only preferFrontCamera is used. Options that a later scan does not set keep the value
+     * they had in the previous scan that used the prepared picker.
+     * 
+     * The success callback is called with true once the picker is ready, or with false if the 
+     * device can only run the legacy picker which is never reused.
+     */
+    private void prepare(JSONArray data, final CallbackContext callbackContext) {
+        final String appKey;
+        final boolean preferFrontCamera;
+        try {
+            appKey = data.getString(0);
+            JSONObject options = data.optJSONObject(1);
+            preferFrontCamera = options != null && options.optBoolean("preferFrontCamera");
         } catch (JSONException e) {
             Log.e("ScanditSDK", "Function called through Java Script contained illegal objects.");
-            e.printStackTrace();
+            callbackContext.error("Illegal arguments");
             return;
         }
         
-        if (data.length() > 1) {
-            // We extract all options and add them to the intent extra bundle.
-            try {
-                JSONObject options = data.getJSONObject(1);
-                @SuppressWarnings("unchecked")
-                Iterator<String> iter = (Iterator<String>) options.keys();
-                while (iter.hasNext()) {
-                    String key = iter.next();
-                    Object obj = options.opt(key);
-                    if (obj != null) {
-                        if (obj instanceof Integer) {
-                            intent.putExtra(key, (Integer) obj);
-                        } else if (obj instanceof Boolean) {
-                            intent.putExtra(key, (Boolean) obj);
-                        } else if (obj instanceof String) {
-                            intent.putExtra(key, (String) obj);
-                        }
+        runOnUiThread(callbackContext, new Runnable() {
+            public void run() {
+                boolean prepared = PreparedBarcodePicker.prepare(
+                        cordova.getActivity(), appKey, preferFrontCamera);
+                callbackContext.sendPluginResult(new PluginResult(Status.OK, prepared));
+            }
+        });
+    }
+    
+    /**
+     * Frees the barcode picker constructed through the prepare action.
+     */
+    private void release(final CallbackContext callbackContext) {
+        runOnUiThread(callbackContext, new Runnable() {
+            public void run() {
+                PreparedBarcodePicker.release();
+                callbackContext.success();
+            }
+        });
+    }
+    
+    /**
+     * Reports the p50/p90/p99/max milliseconds from the start of recent scans to each phase, 
+     * separately for scans that constructed the picker ("cold") and that reused it ("warm").
+     */
+    private void getMetrics(final CallbackContext callbackContext) {
+        runInBackground(callbackContext, new Runnable() {
+            public void run() {
+                try {
+                    callbackContext.success(ScanMetrics.toJSON());
+                } catch (JSONException e) {
+                    callbackContext.error(e.getMessage());
+                }
+            }
+        });
+    }
+    
+    /**
+     * Maps the product catalog index file at the given path, ["catalog.idx"], such that every
+     * result holds the catalog record of the scanned code as its third entry, or null if there is
+     * none.
+     * Relative paths are resolved against the app's files directory. The success callback is
+     * called with the number of records.
+     */
+    private void loadCatalog(JSONArray data, final CallbackContext callbackContext) {
+        final File index;
+        try {
+            index = resolveFile(data.getString(0));
+        } catch (JSONException e) {
+            callbackContext.error(e.getMessage());
+            return;
+        }
+        
+        runInBackground(callbackContext, new Runnable() {
+            public void run() {
+                try {
+                    ProductCatalog catalog = ProductCatalog.open(index);
+                    replaceCatalog(catalog);
+                    callbackContext.success(catalog.size());
+                } catch (IOException e) {
+                    Log.e("ScanditSDK", "Could not load the product catalog.", e);
+                    callbackContext.error(e.getMessage());
+                }
+            }
+        });
+    }
+    
+    /**
+     * Loads the codes expected to be scanned, e.g. [["4012345678901", ...], {"bloomFilter": true}],
+     * replacing a previously loaded manifest. Every following result is matched against it and 
+     * tagged in its fourth entry with "matched", "duplicate" (matched before) or "unexpected". 
+     * The bloomFilter option adds a filter that rejects most unexpected codes without a table 
+     * lookup, at 10 bits per code. The success callback is called with the manifest status, see 
+     * getManifestStatus.
+     */
+    private void loadManifest(final JSONArray data, final CallbackContext callbackContext) {
+        runInBackground(callbackContext, new Runnable() {
+            public void run() {
+                try {
+                    JSONArray codes = data.getJSONArray(0);
+                    JSONObject options = data.optJSONObject(1);
+                    boolean bloomFilter = options != null && options.optBoolean("bloomFilter");
+                    ExpectedManifest manifest = new ExpectedManifest(codes.length(), bloomFilter);
+                    for (int i = 0; i < codes.length(); i++) {
+                        manifest.add(codes.getString(i));
                     }
+                    mManifest = manifest;
+                    callbackContext.success(manifest.toJSON());
+                } catch (JSONException e) {
+                    callbackContext.error(e.getMessage());
                 }
-            } catch (JSONException e) {
-                e.printStackTrace();
             }
+        });
+    }
+    
+    /**
+     * Calls the success callback with the progress of the loaded manifest, as {"size": n, 
+     * "matched": n, "unexpected": n, "remaining": n, "complete": true/false}. Codes are counted 
+     * as unexpected every time they are scanned.
+     */
+    private void getManifestStatus(final CallbackContext callbackContext) {
+        ExpectedManifest manifest = mManifest;
+        if (manifest == null) {
+            callbackContext.error("No manifest loaded");
+            return;
+        }
+        try {
+            callbackContext.success(manifest.toJSON());
+        } catch (JSONException e) {
+            callbackContext.error(e.getMessage());
+        }
+    }
+    
+    /**
+     * Builds a product catalog index file from a CSV file, ["products.csv", "catalog.idx"], and 
+     * loads it. The first column of the CSV file is the code, the rest of the line is the record
+     * reported with the code. An existing index file is only replaced once the new one is complete.
+     * The success callback is called with the number of records.
+     */
+    private void buildCatalog(JSONArray data, final CallbackContext callbackContext) {
+        final File csv;
+        final File index;
+        try {
+            csv = resolveFile(data.getString(0));
+            index = resolveFile(data.getString(1));
+        } catch (JSONException e) {
+            callbackContext.error(e.getMessage());
+            return;
+        }
+        
+        runInBackground(callbackContext, new Runnable() {
+            public void run() {
+                try {
+                    ProductCatalog.build(csv, index);
+                    ProductCatalog catalog = ProductCatalog.open(index);
+                    replaceCatalog(catalog);
+                    callbackContext.success(catalog.size());
+                } catch (IOException e) {
+                    Log.e("ScanditSDK", "Could not build the product catalog.", e);
+                    callbackContext.error(e.getMessage());
+                }
+            }
+        });
+    }
+    
+    private synchronized void replaceCatalog(ProductCatalog catalog) {
+        ProductCatalog previous = mCatalog;
+        mCatalog = catalog;
+        if (previous != null) {
+            previous.close();
+        }
+    }
+    
+    private File resolveFile(String path) {
+        if (path.startsWith("file://")) {
+            path = path.substring("file://".length());
+        }
+        File file = new File(path);
+        if (!file.isAbsolute()) {
+            file = new File(cordova.getActivity().getFilesDir(), path);
+        }
+        return file;
+    }
+    
+    /**
+     * Calls the success callback with the symbology counts of the autoProfile option, as 
+     * {context: {symbology option: count}}.
+     */
+    private void getSymbologyStats(final CallbackContext callbackContext) {
+        runInBackground(callbackContext, new Runnable() {
+            public void run() {
+                try {
+                    callbackContext.success(
+                            SymbologyProfile.countsToJSON(cordova.getActivity()));
+                } catch (JSONException e) {
+                    callbackContext.error(e.getMessage());
+                }
+            }
+        });
+    }
+    
+    /**
+     * Returns the journal scans with the journal option append their results to.
+     */
+    synchronized ScanJournal getJournal() {
+        if (mJournal == null) {
+            mJournal = new ScanJournal(
+                    new File(cordova.getActivity().getFilesDir(), JOURNAL_FILE));
+        }
+        return mJournal;
+    }
+    
+    /**
+     * Reads a page of the scan journal. Takes the sequence number of the first record to read and
+     * the maximum number of records, both optional, e.g. [0, 100]. The success callback is called
+     * with {"entries": [[seq, timestamp, barcode, symbology], ...], "firstSeq": n, "nextSeq": n}, 
+     * where nextSeq is the sequence number to read the next page with.
+     */
+    private void readJournal(JSONArray data, CallbackContext callbackContext) {
+        long fromSeq = data.optLong(0, 0);
+        int limit = data.optInt(1, DEFAULT_JOURNAL_PAGE_SIZE);
+        if (limit < 1) {
+            callbackContext.error("Illegal page size: " + data.opt(1));
+            return;
+        }
+        getJournal().read(fromSeq, limit, callbackContext);
+    }
+    
+    /**
+     * Drops the journal records before the given sequence number, e.g. [nextSeq] of the last page 
+     * read. The sequence number is required, such that a missing argument never clears the whole
+     * journal.
+     */
+    private void truncateJournal(JSONArray data, CallbackContext callbackContext) {
+        if (data.isNull(0)) {
+            callbackContext.error("Missing sequence number");
+            return;
+        }
+        long beforeSeq = data.optLong(0, -1);
+        if (beforeSeq < 0) {
+            callbackContext.error("Illegal sequence number: " + data.opt(0));
+            return;
+        }
+        getJournal().truncate(beforeSeq, callbackContext);
+    }
+    
+    /**
+     * Starts posting the codes of scans with the upload option to a backend. Takes the 
+     * configuration, e.g. [{"url": "https://example.com/scans", "headers": {"Authorization": "..."},
+     * "metadata": {"device": "..."}, "batchSize": 50, "batchInterval": 2000, "maxQueueSize": 1000,
+     * "maxRetries": 8, "initialBackoff": 1000, "maxBackoff": 60000, "timeout": 15000}], of which 
+     * only url is required.
+     * 
+     * The success callback is called for every batch delivered, retried or given up on and when 
+     * the queue overflows, with {"event": ..., "batch": n, "count": n, "error": message, 
+     * "retryIn": millis} and the counts of getUploadStatus. The failure callback is called if the
+     * configuration is illegal or an uploader already runs.
+     */
+    private synchronized void startUpload(JSONArray data, CallbackContext callbackContext) {
+        if (mUploader != null) {
+            callbackContext.error("Upload already started");
+            return;
+        }
+        try {
+            mUploader = new ScanUploader(data.getJSONObject(0), callbackContext);
+        } catch (JSONException e) {
+            callbackContext.error(e.getMessage());
+        }
+    }
+    
+    /**
+     * Stops the uploader after a last attempt to send the queued codes. The success callback is 
+     * called with the final counts, see getUploadStatus, the callback of startUpload is released.
+     */
+    private void stopUpload(CallbackContext callbackContext) {
+        ScanUploader uploader;
+        synchronized (this) {
+            uploader = mUploader;
+            mUploader = null;
+        }
+        if (uploader == null) {
+            callbackContext.error("Upload not started");
+            return;
+        }
+        uploader.stop(callbackContext);
+    }
+    
+    /**
+     * Calls the success callback with {"queued": n, "delivered": n, "failed": n, "dropped": n, 
+     * "retries": n}, the codes waiting for upload, delivered, given up on, dropped because the 
+     * queue was full and the number of retried attempts.
+     */
+    private void getUploadStatus(CallbackContext callbackContext) {
+        ScanUploader uploader = mUploader;
+        if (uploader == null) {
+            callbackContext.error("Upload not started");
+            return;
+        }
+        try {
+            callbackContext.success(uploader.getStatus());
+        } catch (JSONException e) {
+            callbackContext.error(e.getMessage());
+        }
+    }
+    
+    /**
+     * Lets the adaptive options of the picker scanning continuously learn from a code that passed
+     * checksum validation and the duplicate filter.
+     */
+    void recordDecode(final String symbology) {
+        cordova.getActivity().runOnUiThread(new Runnable() {
+            public void run() {
+                boolean inActivity;
+                synchronized (ScanditSDK.this) {
+                    inActivity = mContinuousInActivity;
+                }
+                if (inActivity) {
+                    ScanditSDKActivity.recordContinuousDecode(symbology);
+                } else if (mEmbeddedPicker != null) {
+                    mEmbeddedPicker.recordDecode(symbology);
+                }
+            }
+        });
+    }
+    
+    /**
+     * Queues a reported code for the uploader, if one runs.
+     */
+    void upload(String barcode, String symbology) {
+        ScanUploader uploader = mUploader;
+        if (uploader != null) {
+            uploader.add(barcode, symbology);
+        }
+    }
+    
+    /**
+     * Registers the decoder used by the scanImages action. The plugin bundles no decoder for still
+     * images, the action fails until the app registers one. See the README for an example.
+     */
+    public static void setStillImageDecoder(StillImageDecoder decoder) {
+        sStillImageDecoder = decoder;
+    }
+    
+    /**
+     * Decodes image files, [["/path/a.jpg", "/path/b.jpg"], {"maxImagePixels": 2000000}], in 
+     * parallel. The success callback is called once per file, as soon as it is done, with 
+     * {"path": ..., "barcode": ..., "symbology": ...}. The barcode is missing if the image contains
+     * no code, and "error" is set instead if the file could not be read. The last call is 
+     * {"done": true, "count": ...}. Requires a decoder registered through setStillImageDecoder().
+     */
+    private void scanImages(JSONArray data, final CallbackContext callbackContext) {
+        StillImageDecoder decoder = sStillImageDecoder;
+        if (decoder == null) {
+            callbackContext.error("No still image decoder registered, the app has to provide one "
+                    + "through ScanditSDK.setStillImageDecoder()");
+            return;
+        }
+        final List<String> paths = new ArrayList<String>();
+        int maxPixels;
+        try {
+            JSONArray files = data.getJSONArray(0);
+            for (int i = 0; i < files.length(); i++) {
+                paths.add(resolveFile(files.getString(i)).getPath());
+            }
+            JSONObject options = data.optJSONObject(1);
+            maxPixels = options != null 
+                    ? options.optInt("maxImagePixels", DEFAULT_MAX_IMAGE_PIXELS)
+                    : DEFAULT_MAX_IMAGE_PIXELS;
+        } catch (JSONException e) {
+            callbackContext.error(e.getMessage());
+            return;
+        }
+        
+        final ImageBatchScanner scanner = new ImageBatchScanner(
+                new BitmapImageLoader(), decoder, Math.max(1, maxPixels));
+        runInBackground(callbackContext, new Runnable() {
+            public void run() {
+                scanner.scan(paths, new ImageBatchScanner.Listener() {
+                    public void didScanImage(String path, String[] result, String error) {
+                        JSONObject json = new JSONObject();
+                        try {
+                            json.put("path", path);
+                            if (result != null) {
+                                json.put("barcode", result[0]);
+                                json.put("symbology", result[1]);
+                            }
+                            if (error != null) {
+                                json.put("error", error);
+                            }
+                        } catch (JSONException e) {
+                            // Can not happen with string values.
+                        }
+                        PluginResult pluginResult = new PluginResult(Status.OK, json);
+                        pluginResult.setKeepCallback(true);
+                        callbackContext.sendPluginResult(pluginResult);
+                    }
+                    
+                    public void didFinish(int count) {
+                        JSONObject json = new JSONObject();
+                        try {
+                            json.put("done", true);
+                            json.put("count", count);
+                        } catch (JSONException e) {
+                            // Can not happen with primitive values.
+                        }
+                        callbackContext.success(json);
+                    }
+                });
+            }
+        });
+    }
+    
+    /**
+     * Creates the result reported for a code, always [barcode, symbology, catalog record, 
+     * manifest tag, GS1 fields]. The last three are null if no product catalog or manifest is 
+     * loaded, the gs1 option is not set or there is nothing for the code. Matches the code against
+     * the manifest, so it has to be called once per reported code.
+     */
+    JSONArray createResult(String barcode, String symbology, ScanSettings settings) {
+        JSONArray args = new JSONArray();
+        args.put(barcode);
+        args.put(symbology);
+        ProductCatalog catalog = mCatalog;
+        String record = catalog != null ? catalog.lookup(barcode) : null;
+        args.put(record != null ? record : JSONObject.NULL);
+        ExpectedManifest manifest = mManifest;
+        args.put(manifest != null ? manifest.match(barcode) : JSONObject.NULL);
+        JSONObject fields = settings.get(ScanSettings.GS1) 
+                ? Gs1Parser.parse(barcode, symbology) : null;
+        args.put(fields != null ? fields : JSONObject.NULL);
+        return args;
+    }
+    
+    /**
+     * Creates the plugin result reported for a code. With the binaryResult option it is a 
+     * multipart result whose first part holds the bytes of the code, followed by the other 
+     * entries of createResult, which Java Script receives as separate callback arguments.
+     */
+    PluginResult createPluginResult(String barcode, String symbology, ScanSettings settings) {
+        JSONArray args = createResult(barcode, symbology, settings);
+        if (!settings.get(ScanSettings.BINARY_RESULT)) {
+            return new PluginResult(Status.OK, args);
+        }
+        List<PluginResult> parts = new ArrayList<PluginResult>(args.length());
+        parts.add(new PluginResult(Status.OK, toBytes(barcode)));
+        for (int i = 1; i < args.length(); i++) {
+            Object value = args.opt(i);
+            if (value instanceof JSONObject) {
+                parts.add(new PluginResult(Status.OK, (JSONObject) value));
+            } else if (value instanceof String) {
+                parts.add(new PluginResult(Status.OK, (String) value));
+            } else {
+                parts.add(new PluginResult(Status.OK, (String) null));
+            }
+        }
+        return new PluginResult(Status.OK, parts);
+    }
+    
+    /**
+     * Returns the bytes of a code, as ISO-8859-1 if all its characters fit, otherwise as UTF-8.
+     */
+    private static byte[] toBytes(String barcode) {
+        int length = barcode.length();
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            char c = barcode.charAt(i);
+            if (c > 0xff) {
+                return barcode.getBytes(Charset.forName("UTF-8"));
+            }
+            bytes[i] = (byte) c;
+        }
+        return bytes;
+    }
+    
+    /**
+     * Stops a scan that was started in continuous mode and closes the scan screen. The callback of
+     * the scan is released without being called again.
+     */
+    private synchronized void stop() {
+        if (mContinuousInActivity) {
+            ScanditSDKActivity.stopContinuousScanning();
+            finishContinuousDelivery(null);
+        }
+    }
+    
+    /**
+     * Called by the scan screen and the embedded picker for every code recognized. The result is
+     * sent to the scan callback, which is kept alive for the following results.
+     */
+    public void didScanBarcode(String barcode, String symbology) {
+        ContinuousDelivery delivery = mContinuousDelivery;
+        if (delivery != null) {
+            delivery.deliver(barcode, symbology);
         }
-        cordova.startActivityForResult(this, intent, 1);
+    }
+    
+    @Override
+    public void onPause(boolean multitasking) {
+        if (mEmbeddedPicker != null) {
+            mEmbeddedPicker.onPause();
+        }
+        super.onPause(multitasking);
+    }
+    
+    @Override
+    public void onResume(boolean multitasking) {
+        super.onResume(multitasking);
+        if (mEmbeddedPicker != null) {
+            mEmbeddedPicker.onResume();
+        }
+    }
+    
+    @Override
+    public void onDestroy() {
+        // The prepared and embedded pickers belong to the activity that is going away.
+        if (mEmbeddedPicker != null) {
+            mEmbeddedPicker.hide();
+        }
+        PreparedBarcodePicker.release();
+        finishContinuousDelivery(null);
+        if (mResultExecutor != null) {
+            mResultExecutor.shutdown();
+        }
+        replaceCatalog(null);
+        synchronized (this) {
+            if (mUploader != null) {
+                mUploader.stop(null);
+                mUploader = null;
+            }
+            if (mJournal != null) {
+                mJournal.close();
+                mJournal = null;
+            }
+        }
+        super.onDestroy();
     }
     
     @Override
     public void onActivityResult(int requestCode, int resultCode, Intent data) {
-        if (resultCode == ScanditSDKActivity.SCAN) {
-            String barcode = data.getExtras().getString("barcode");
-            String symbology = data.getExtras().getString("symbology");
-            JSONArray args = new JSONArray();
-            args.put(barcode);
-            args.put(symbology);
-            mCallbackContext.success(args);
+        // The scan screen is gone, no more continuous results can arrive.
+        ScanditSDKActivity.setContinuousListener(null);
+        String[] result = ScanditSDKActivity.takeResult(requestCode);
+        ScanRequest request = mScanRequests.remove(requestCode);
+        ScanMetrics.unregister(requestCode);
+        if (request != null) {
+            deliverScanResult(request, resultCode, result);
+        }
+        scanFinished(requestCode);
+    }
+    
+    /**
+     * @param result The [barcode, symbology] the scan screen finished with, null if canceled.
+     */
+    private void deliverScanResult(ScanRequest request, int resultCode, String[] result) {
+        if (request.mSettings.get(ScanSettings.CONTINUOUS_MODE)) {
+            synchronized (this) {
+                if (mContinuousInActivity) {
+                    // The user left the scan screen, the stop action would have finished the 
+                    // delivery.
+                    finishContinuousDelivery("Canceled");
+                }
+            }
+            return;
+        }
+        CallbackContext callbackContext = request.mCallbackContext;
+        boolean journal = request.mSettings.get(ScanSettings.JOURNAL);
+        boolean upload = request.mSettings.get(ScanSettings.UPLOAD);
         
-        } else if (resultCode == ScanditSDKActivity.MANUAL) {
-            String barcode = data.getExtras().getString("barcode");
-            JSONArray args = new JSONArray();
-            args.put(barcode);
-            args.put("UNKNOWN");
-            mCallbackContext.success(args);
+        if (result != null && (resultCode == ScanditSDKActivity.SCAN 
+                || resultCode == ScanditSDKActivity.MANUAL)) {
+            ScanMetrics.mark(request.mTiming, ScanMetrics.DELIVERED);
+            String barcode = result[0];
+            String symbology = result[1];
+            if (journal) {
+                getJournal().append(barcode, symbology);
+            }
+            if (upload) {
+                upload(barcode, symbology);
+            }
+            sendResult(callbackContext, barcode, symbology, request.mSettings);
             
-        } else if (resultCode == ScanditSDKActivity.CANCEL) {
-        	mCallbackContext.error("Canceled");
+        } else {
+        	callbackContext.error("Canceled");
+        }
+    }
+    
+    /**
+     * Creates the result of a single scan on the result executor, which keeps the catalog lookup
+     * and GS1 parsing off the UI thread, and calls the success callback with it. If creating the
+     * result fails, the failure callback is called instead.
+     */
+    private void sendResult(final CallbackContext callbackContext, final String barcode, 
+                            final String symbology, final ScanSettings settings) {
+        getResultExecutor().execute(guard(callbackContext, new Runnable() {
+            public void run() {
+                callbackContext.sendPluginResult(createPluginResult(barcode, symbology, settings));
+            }
+        }));
+    }
+    
+    /**
+     * A scan through the scan screen, from the call of the scan action until its result.
+     */
+    private static final class ScanRequest {
+        
+        final int mCode;
+        final CallbackContext mCallbackContext;
+        final ScanSettings mSettings;
+        // Started when the scan action was called, also while the scan waits in the queue.
+        final ScanMetrics.Timing mTiming;
+        
+        ScanRequest(int code, CallbackContext callbackContext, ScanSettings settings, 
+                    ScanMetrics.Timing timing) {
+            mCode = code;
+            mCallbackContext = callbackContext;
+            mSettings = settings;
+            mTiming = timing;
         }
     }
 }
@@ -18,13 +18,22 @@
 
 package com.mirasense.scanditsdk.plugin;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
 import android.app.Activity;
-import android.content.Intent;
 import android.content.pm.ActivityInfo;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.view.Window;
 import android.view.WindowManager;
 
+import org.json.JSONException;
+import org.json.JSONObject;
+
 import com.mirasense.scanditsdk.LegacyPortraitScanditSDKBarcodePicker;
 import com.mirasense.scanditsdk.ScanditSDKBarcodePicker;
 import com.mirasense.scanditsdk.interfaces.ScanditSDK;
@@ -41,31 +50,197 @@ public class ScanditSDKActivity extends Activity implements ScanditSDKListener {
     public static final int SCAN = 1;
     public static final int MANUAL = 2;
     
+    /**
+     * Receives the codes recognized while the activity runs in continuous mode.
+     */
+    public interface ContinuousScanListener {
+        
+        /**
+         * Called for every bar code scanned or entered manually while the scan screen stays open.
+         */
+        public void didScanBarcode(String barcode, String symbology);
+    }
+    
+    private static volatile ContinuousScanListener sContinuousListener;
+    private static volatile Executor sResultExecutor;
+    private static volatile ScanditSDKActivity sContinuousActivity;
+    private static ScanditSDKActivity sRunningActivity;
+    private static volatile int sCanceledRequest;
+    // Results of finished scan screens by request code. The plugin runs in the same process and 
+    // takes them from here, which spares copying the code into and out of the result intent.
+    private static final ConcurrentHashMap<Integer, String[]> sResults = 
+            new ConcurrentHashMap<Integer, String[]>();
+    
+    private int mRequestCode;
     private ScanditSDK mBarcodePicker;
+    private ScanSettings mSettings;
+    private boolean mUsesPreparedPicker;
+    private boolean mContinuousMode;
+    private HotSpotTuner mHotSpotTuner;
+    private SymbologyProfile mSymbologyProfile;
+    private IdleDutyCycler mIdleDutyCycler;
+    private ScanMetrics.Timing mTiming;
+    // Set while paused, codes recognized meanwhile are ignored.
+    private boolean mSuspended;
+    // Set while a code is validated off the UI thread, codes recognized meanwhile are ignored.
+    private boolean mValidating;
     
     
     @Override
     protected void onCreate(Bundle savedInstanceState) {
-        initializeAndStartBarcodeRecognition(getIntent().getExtras());
+        mRequestCode = getIntent().getIntExtra("request", 0);
+        mTiming = ScanMetrics.forRequest(mRequestCode);
+        ScanMetrics.mark(mTiming, ScanMetrics.ACTIVITY_CREATED);
+        ScanSettings settings = ScanSettings.byId(getIntent().getIntExtra("settings", 0));
+        if (settings == null || mRequestCode == sCanceledRequest) {
+            // The plugin that started the scan is gone, for example because the process was 
+            // restarted while the activity was in the background, or the scan was canceled 
+            // before the activity came up.
+            super.onCreate(savedInstanceState);
+            setResult(CANCEL);
+            finish();
+            return;
+        }
+        mSettings = settings;
+        mContinuousMode = settings.get(ScanSettings.CONTINUOUS_MODE);
+        initializeAndStartBarcodeRecognition(settings);
         super.onCreate(savedInstanceState);
+        sRunningActivity = this;
+        
+        if (mContinuousMode) {
+            sContinuousActivity = this;
+            if (sContinuousListener == null) {
+                // The scan was stopped before the activity came up.
+                didCancel();
+            }
+        }
+    }
+    
+    @Override
+    protected void onDestroy() {
+        if (sContinuousActivity == this) {
+            sContinuousActivity = null;
+        }
+        if (sRunningActivity == this) {
+            sRunningActivity = null;
+        }
+        if (mUsesPreparedPicker) {
+            PreparedBarcodePicker.recycle(this);
+        }
+        super.onDestroy();
+    }
+    
+    /**
+     * Sets the listener that receives the results of the next activity started in continuous mode.
+     */
+    static void setContinuousListener(ContinuousScanListener listener) {
+        sContinuousListener = listener;
+    }
+    
+    /**
+     * Sets the executor single scans validate checksums on before the scan screen finishes, the 
+     * one the plugin creates and delivers results on.
+     */
+    static void setResultExecutor(Executor executor) {
+        sResultExecutor = executor;
+    }
+    
+    /**
+     * Closes the activity running in continuous mode, if there is one.
+     */
+    static void stopContinuousScanning() {
+        sContinuousListener = null;
+        final ScanditSDKActivity activity = sContinuousActivity;
+        if (activity != null) {
+            activity.runOnUiThread(new Runnable() {
+                public void run() {
+                    if (!activity.isFinishing()) {
+                        activity.didCancel();
+                    }
+                }
+            });
+        }
+    }
+    
+    /**
+     * Closes the scan screen opened for the given request code, if it is still open or about to 
+     * be opened.
+     */
+    static void cancelScanning(final int requestCode) {
+        sCanceledRequest = requestCode;
+        new Handler(Looper.getMainLooper()).post(new Runnable() {
+            public void run() {
+                ScanditSDKActivity activity = sRunningActivity;
+                if (activity != null && activity.mRequestCode == requestCode 
+                        && !activity.isFinishing()) {
+                    activity.didCancel();
+                }
+            }
+        });
+    }
+    
+    /**
+     * Returns the [barcode, symbology] the scan screen opened for the given request code finished
+     * with, or null if it was canceled.
+     */
+    static String[] takeResult(int requestCode) {
+        return sResults.remove(requestCode);
+    }
+    
+    /**
+     * Applies the given options to the picker of the open scan screen without restarting it. Has 
+     * to be called on the UI thread.
+     * 
+     * @return False if no scan screen is open.
+     * @throws JSONException If an option has an illegal value.
+     */
+    static boolean updateSettings(JSONObject changes) throws JSONException {
+        ScanditSDKActivity activity = sRunningActivity;
+        if (activity == null || activity.isFinishing()) {
+            return false;
+        }
+        ScanSettings settings = activity.mSettings.merge(changes);
+        PreparedBarcodePicker.apply(activity.mBarcodePicker, settings, activity.mSettings);
+        activity.mSettings = settings;
+        if (activity.mSymbologyProfile != null) {
+            activity.mSymbologyProfile.settingsChanged(settings);
+        }
+        return true;
+    }
+    
+    /**
+     * Lets the adaptive options of the scan screen running in continuous mode learn from a code
+     * that passed checksum validation and the duplicate filter. Has to be called on the UI thread.
+     */
+    static void recordContinuousDecode(String symbology) {
+        ScanditSDKActivity activity = sContinuousActivity;
+        if (activity != null && !activity.isFinishing()) {
+            activity.recordDecode(symbology);
+        }
     }
     
     @SuppressWarnings("deprecation")
-    public void initializeAndStartBarcodeRecognition(Bundle extras) {
+    public void initializeAndStartBarcodeRecognition(ScanSettings settings) {
         // Switch to full screen.
         getWindow().setFlags(WindowManager.LayoutParams.FLAG_FULLSCREEN, 
                              WindowManager.LayoutParams.FLAG_FULLSCREEN);
         requestWindowFeature(Window.FEATURE_NO_TITLE);
         
         if (ScanditSDKBarcodePicker.canRunPortraitPicker()) {
+        	boolean preferFrontCamera = settings.get(ScanSettings.PREFER_FRONT_CAMERA);
         	int facing = ScanditSDK.CAMERA_FACING_BACK;
-        	if (extras.getBoolean("preferFrontCamera")) {
+        	if (preferFrontCamera) {
         		facing = ScanditSDK.CAMERA_FACING_FRONT;
         	}
+            // Reuse the picker constructed through the prepare action if there is one, otherwise
             // create ScanditSDKBarcodePicker that takes care of the camera access and 
             // barcode recognition.
-            ScanditSDKBarcodePicker picker = new ScanditSDKBarcodePicker(
-                    this, extras.getString("appKey"), facing);
+            ScanditSDKBarcodePicker picker = PreparedBarcodePicker.acquire(
+                    settings.getAppKey(), preferFrontCamera, this);
+            mUsesPreparedPicker = picker != null;
+            if (picker == null) {
+                picker = new ScanditSDKBarcodePicker(this, settings.getAppKey(), facing);
+            }
             
             // Add both views to activity, with the scan GUI on top.
             this.setContentView(picker);
@@ -78,7 +253,7 @@ public class ScanditSDKActivity extends Activity implements ScanditSDKListener {
             // create ScanditSDKBarcodePicker that takes care of the camera access and 
             // barcode recognition.
             LegacyPortraitScanditSDKBarcodePicker picker = new LegacyPortraitScanditSDKBarcodePicker(
-                    this, extras.getString("appKey"));
+                    this, settings.getAppKey());
             
             // Add both views to activity, with the scan GUI on top.
             this.setContentView(picker);
@@ -86,298 +261,65 @@ public class ScanditSDKActivity extends Activity implements ScanditSDKListener {
             mBarcodePicker.getOverlayView().setRightButtonCaption("CANCEL");
         }
         
-        // Put all options to effect.
-        if (extras.containsKey("searchBar")) {
-            mBarcodePicker.getOverlayView().showSearchBar(extras.getBoolean("searchBar"));
-        }
-        
-        if (extras.containsKey("1DScanning")) {
-            mBarcodePicker.set1DScanningEnabled(extras.getBoolean("1DScanning"));
-        }
-        if (extras.containsKey("2DScanning")) {
-            mBarcodePicker.set2DScanningEnabled(extras.getBoolean("2DScanning"));
-        }
-
-        if (extras.containsKey("ean13AndUpc12")) {
-            mBarcodePicker.setEan13AndUpc12Enabled(extras.getBoolean("ean13AndUpc12"));
-        }
-        if (extras.containsKey("ean8")) {
-            mBarcodePicker.setEan8Enabled(extras.getBoolean("ean8"));
-        }
-        if (extras.containsKey("upce")) {
-            mBarcodePicker.setUpceEnabled(extras.getBoolean("upce"));
-        }
-        if (extras.containsKey("code39")) {
-            mBarcodePicker.setCode39Enabled(extras.getBoolean("code39"));
-        }
-        if (extras.containsKey("code128")) {
-            mBarcodePicker.setCode128Enabled(extras.getBoolean("code128"));
-        }
-        if (extras.containsKey("itf")) {
-            mBarcodePicker.setItfEnabled(extras.getBoolean("itf"));
-        }
-        if (extras.containsKey("qr")) {
-            mBarcodePicker.setQrEnabled(extras.getBoolean("qr"));
-        }
-        if (extras.containsKey("dataMatrix")) {
-            mBarcodePicker.setDataMatrixEnabled(extras.getBoolean("dataMatrix"));
-        }
-        if (extras.containsKey("msiPlessey")) {
-            mBarcodePicker.setMsiPlesseyEnabled(extras.getBoolean("msiPlessey"));
-        }
-        if (extras.containsKey("msiPlesseyChecksumType")) {
-        	String checksum = extras.getString("msiPlesseyChecksumType");
-        	int actualChecksum = ScanditSDK.CHECKSUM_MOD_10;
-        	if (checksum.equals("none")) {
-        		actualChecksum = ScanditSDK.CHECKSUM_NONE;
-        	} else if (checksum.equals("mod11")) {
-        		actualChecksum = ScanditSDK.CHECKSUM_MOD_11;
-        	} else if (checksum.equals("mod1010")) {
-        		actualChecksum = ScanditSDK.CHECKSUM_MOD_1010;
-        	} else if (checksum.equals("mod1110")) {
-        		actualChecksum = ScanditSDK.CHECKSUM_MOD_1110;
-        	}
-        	mBarcodePicker.setMsiPlesseyChecksumType(actualChecksum);
-        }
-
-        if (extras.containsKey("inverseRecognition")) {
-            mBarcodePicker.setInverseRecognitionEnabled(extras.getBoolean("inverseRecognition"));
-        }
-        if (extras.containsKey("microDataMatrix")) {
-            mBarcodePicker.setMicroDataMatrixEnabled(extras.getBoolean("microDataMatrix"));
-        }
-        
-        if (extras.containsKey("force2d")) {
-            mBarcodePicker.force2dRecognition(extras.getBoolean("force2d"));
-        }
-        
-        if (extras.containsKey("scanningHotSpot")) {
-            String hotspot = extras.getString("scanningHotSpot");
-            String[] split = hotspot.split("[/]");
-            if (split.length == 2) {
-                try {
-                    Float x = Float.valueOf(split[0]);
-                    Float y = Float.valueOf(split[1]);
-                    mBarcodePicker.setScanningHotSpot(x, y);
-                } catch (NumberFormatException e) {}
-            }
-        }
+        ScanMetrics.mark(mTiming, mUsesPreparedPicker 
+                ? ScanMetrics.PICKER_REUSED : ScanMetrics.PICKER_CONSTRUCTED);
         
-        if (extras.containsKey("scanningHotspotHeight")) {
-            mBarcodePicker.setScanningHotSpotHeight(extras.getFloat("scanningHotspotHeight"));
-        }
-        
-        if (extras.containsKey("ignorePreviewAspectRatio")) {
-            if (extras.getBoolean("ignorePreviewAspectRatio")) {
-                mBarcodePicker.ignorePreviewAspectRatio();
-            }
-        }
-        
-        
-        if (extras.containsKey("searchBar")) {
-            mBarcodePicker.getOverlayView().showSearchBar(
-                    extras.getBoolean("searchBar"));
-        }
-        if (extras.containsKey("titleBar")) {
-            mBarcodePicker.getOverlayView().showTitleBar(
-                    extras.getBoolean("titleBar"));
-        }
-        if (extras.containsKey("toolBar")) {
-            mBarcodePicker.getOverlayView().showToolBar(
-                    extras.getBoolean("toolBar"));
-        }
-        if (extras.containsKey("beep")) {
-            mBarcodePicker.getOverlayView().setBeepEnabled(
-                    extras.getBoolean("beep"));
-        }
-        if (extras.containsKey("vibrate")) {
-            mBarcodePicker.getOverlayView().setVibrateEnabled(
-                    extras.getBoolean("vibrate"));
-        }
-        if (extras.containsKey("torch")) {
-            mBarcodePicker.getOverlayView().setTorchEnabled(
-                    extras.getBoolean("torch"));
-        }
-        if (extras.containsKey("torchButtonPositionAndSize")) {
-            String hotspot = extras.getString("torchButtonPositionAndSize");
-            String[] split = hotspot.split("[/]");
-            if (split.length == 4) {
-                try {
-                    Float x = Float.valueOf(split[0]);
-                    Float y = Float.valueOf(split[1]);
-                    int width = Integer.valueOf(split[2]);
-                    int height = Integer.valueOf(split[3]);
-                	mBarcodePicker.getOverlayView().setTorchButtonPosition(x, y, width, height);
-                } catch (NumberFormatException e) {}
-            }
-        }
-        
-        if (extras.containsKey("cameraSwitchVisibility")) {
-            String visibility = extras.getString("cameraSwitchVisibility");
-            int actualVisibility = ScanditSDKOverlay.CAMERA_SWITCH_NEVER;
-            if (visibility.equals("tablet")) {
-            	actualVisibility = ScanditSDKOverlay.CAMERA_SWITCH_ON_TABLET;
-            } else if (visibility.equals("always")) {
-            	actualVisibility = ScanditSDKOverlay.CAMERA_SWITCH_ALWAYS;
-            }
-            mBarcodePicker.getOverlayView().setCameraSwitchVisibility(actualVisibility);
-        }
-        if (extras.containsKey("cameraSwitchButtonPositionAndSize")) {
-            String hotspot = extras.getString("cameraSwitchButtonPositionAndSize");
-            String[] split = hotspot.split("[/]");
-            if (split.length == 4) {
-                try {
-                    Float x = Float.valueOf(split[0]);
-                    Float y = Float.valueOf(split[1]);
-                    int width = Integer.valueOf(split[2]);
-                    int height = Integer.valueOf(split[3]);
-                	mBarcodePicker.getOverlayView().setCameraSwitchButtonPosition(x, y, width, height);
-                } catch (NumberFormatException e) {}
-            }
-        }
-        
-        if (extras.containsKey("textForInitialScanScreenState")) {
-            mBarcodePicker.getOverlayView().setTextForInitialScanScreenState(
-                    extras.getString("textForInitialScanScreenState"));
-        }
-        if (extras.containsKey("textForBarcodePresenceDetected")) {
-            mBarcodePicker.getOverlayView().setTextForBarcodePresenceDetected(
-                    extras.getString("textForBarcodePresenceDetected"));
-        }
-        if (extras.containsKey("textForBarcodeDecodingInProgress")) {
-            mBarcodePicker.getOverlayView().setTextForBarcodeDecodingInProgress(
-                    extras.getString("textForBarcodeDecodingInProgress"));
-        }
-        if (extras.containsKey("titleMessage")) {
-            mBarcodePicker.getOverlayView().setTitleMessage(
-                    extras.getString("titleMessage"));
-        }
-        if (extras.containsKey("leftButtonCaption")) {
-            mBarcodePicker.getOverlayView().setLeftButtonCaption(
-                    extras.getString("leftButtonCaption"));
-        }
-        if (extras.containsKey("leftButtonCaptionWhenKeypadVisible")) {
-            mBarcodePicker.getOverlayView().setLeftButtonCaptionWhenKeypadVisible(
-                    extras.getString("leftButtonCaptionWhenKeypadVisible"));
-        }
-        if (extras.containsKey("rightButtonCaption")) {
-            mBarcodePicker.getOverlayView().setRightButtonCaption(
-                    extras.getString("rightButtonCaption"));
-        }
-        if (extras.containsKey("rightButtonCaptionWhenKeypadVisible")) {
-            mBarcodePicker.getOverlayView().setRightButtonCaptionWhenKeypadVisible(
-                    extras.getString("rightButtonCaptionWhenKeypadVisible"));
-        }
-        if (extras.containsKey("setSearchBarPlaceholderText")) {
-            mBarcodePicker.getOverlayView().setSearchBarPlaceholderText(
-                    extras.getString("setSearchBarPlaceholderText"));
-        }
-
-        if (extras.containsKey("viewfinderDimension")) {
-            String hotspot = extras.getString("viewfinderDimension");
-            String[] split = hotspot.split("[/]");
-            if (split.length == 2) {
-                try {
-                    Float width = Float.valueOf(split[0]);
-                    Float height = Float.valueOf(split[1]);
-                	mBarcodePicker.getOverlayView().setViewfinderDimension(width, height);
-                } catch (NumberFormatException e) {}
-            } else if (split.length == 4) {
-                try {
-                    Float width = Float.valueOf(split[0]);
-                    Float height = Float.valueOf(split[1]);
-                    Float landscapeWidth = Float.valueOf(split[2]);
-                    Float landscapeHeight = Float.valueOf(split[3]);
-                	mBarcodePicker.getOverlayView().setViewfinderDimension(
-                			width, height, landscapeWidth, landscapeHeight);
-                } catch (NumberFormatException e) {}
-            }
-        }
-
-        if (extras.containsKey("viewfinderSize")) {
-            String hotspot = extras.getString("viewfinderSize");
-            String[] split = hotspot.split("[/]");
-            if (split.length == 2) {
-                try {
-                    Float width = Float.valueOf(split[0]);
-                    Float height = Float.valueOf(split[1]);
-                	mBarcodePicker.getOverlayView().setViewfinderDimension(width, height);
-                } catch (NumberFormatException e) {}
-            } else if (split.length == 4) {
-                try {
-                    Float width = Float.valueOf(split[0]);
-                    Float height = Float.valueOf(split[1]);
-                    Float landscapeWidth = Float.valueOf(split[2]);
-                    Float landscapeHeight = Float.valueOf(split[3]);
-                	mBarcodePicker.getOverlayView().setViewfinderDimension(
-                			width, height, landscapeWidth, landscapeHeight);
-                } catch (NumberFormatException e) {}
-            }
-        }
-        
-        if (extras.containsKey("viewfinderTextHook")) {
-        	mBarcodePicker.getOverlayView().drawViewfinderTextHook(extras.getBoolean("viewfinderTextHook"));
-        }
-        if (extras.containsKey("viewfinderColor")) {
-            String color = extras.getString("viewfinderColor");
-            if (color.length() == 6) {
-                try {
-                    String red = color.substring(0, 2);
-                    String green = color.substring(2, 4);
-                    String blue = color.substring(4, 6);
-                    float r = ((float) Integer.parseInt(red, 16)) / 256.0f;
-                    float g = ((float) Integer.parseInt(green, 16)) / 256.0f;
-                    float b = ((float) Integer.parseInt(blue, 16)) / 256.0f;
-                    mBarcodePicker.getOverlayView().setViewfinderColor(r, g, b);
-                } catch (NumberFormatException e) {}
-            }
-        }
-        if (extras.containsKey("viewfinderDecodedColor")) {
-            String color = extras.getString("viewfinderDecodedColor");
-            if (color.length() == 6) {
-                try {
-                    String red = color.substring(0, 2);
-                    String green = color.substring(2, 4);
-                    String blue = color.substring(4, 6);
-                    float r = ((float) Integer.parseInt(red, 16)) / 256.0f;
-                    float g = ((float) Integer.parseInt(green, 16)) / 256.0f;
-                    float b = ((float) Integer.parseInt(blue, 16)) / 256.0f;
-                    mBarcodePicker.getOverlayView().setViewfinderDecodedColor(r, g, b);
-                } catch (NumberFormatException e) {}
-            }
+        // Put all options to effect.
+        PreparedBarcodePicker.apply(mBarcodePicker, settings, null);
+        mHotSpotTuner = settings.createHotSpotTuner(this);
+        if (mHotSpotTuner != null) {
+            mBarcodePicker.setScanningHotSpotHeight(mHotSpotTuner.getHeight());
         }
-        if (extras.containsKey("logoOffsets")) {
-            String offsets = extras.getString("logoOffsets");
-            String[] split = offsets.split("[,]");
-            if (split.length == 4) {
-                try {
-                    Float xOffset = Float.valueOf(split[0].trim());
-                    Float yOffset = Float.valueOf(split[1].trim());
-                    Float landscapeXOffset = Float.valueOf(split[2].trim());
-                    Float landscapeYOffset = Float.valueOf(split[3].trim());
-                	mBarcodePicker.getOverlayView().setViewfinderDimension(
-                			xOffset, yOffset, landscapeXOffset, landscapeYOffset);
-                } catch (NumberFormatException e) {}
-            }
+        mSymbologyProfile = settings.createSymbologyProfile(this);
+        if (mSymbologyProfile != null) {
+            mSymbologyProfile.apply(mBarcodePicker, settings);
         }
+        mIdleDutyCycler = settings.createIdleDutyCycler(mBarcodePicker);
 
         // Register listener, in order to be notified about relevant events 
-        // (e.g. a successfully scanned bar code).
-        mBarcodePicker.getOverlayView().addListener(this);
+        // (e.g. a successfully scanned bar code). A prepared picker already forwards its events.
+        if (!mUsesPreparedPicker) {
+            mBarcodePicker.getOverlayView().addListener(this);
+        }
     }
     
     @Override
     protected void onPause() {
         // When the activity is in the background immediately stop the 
         // scanning to save resources and free the camera.
+        mSuspended = true;
+        if (mIdleDutyCycler != null) {
+            mIdleDutyCycler.scanningStopped();
+        }
         mBarcodePicker.stopScanning();
+        if (mHotSpotTuner != null) {
+            mHotSpotTuner.scanningStopped();
+        }
+        if (mSymbologyProfile != null) {
+            mSymbologyProfile.scanningStopped();
+        }
         super.onPause();
     }
     
     @Override
     protected void onResume() {
         // Once the activity is in the foreground again, restart scanning.
+        long start = System.nanoTime();
         mBarcodePicker.startScanning();
+        if (mSuspended) {
+            ScanMetrics.record(ScanMetrics.RESUME_RESTARTED, System.nanoTime() - start);
+        }
+        mSuspended = false;
+        ScanMetrics.mark(mTiming, ScanMetrics.SCANNING_STARTED);
+        if (mHotSpotTuner != null) {
+            mHotSpotTuner.scanningStarted(SystemClock.elapsedRealtime());
+        }
+        if (mSymbologyProfile != null) {
+            mSymbologyProfile.scanningStarted();
+        }
+        if (mIdleDutyCycler != null) {
+            mIdleDutyCycler.scanningStarted();
+        }
         super.onResume();
     }
 
@@ -398,13 +340,82 @@ public class ScanditSDKActivity extends Activity implements ScanditSDKListener {
      * @param symbology Scanned bar code symbology .
      */
     public void didScanBarcode(String barcode, String symbology) {
+        if (mSuspended) {
+            return;
+        }
+        if (mIdleDutyCycler != null) {
+            mIdleDutyCycler.decoded();
+        }
+        ScanMetrics.mark(mTiming, ScanMetrics.FIRST_DECODE);
+        if (mHotSpotTuner != null && mHotSpotTuner.decoded(barcode.trim(), 
+                SystemClock.elapsedRealtime())) {
+            mBarcodePicker.setScanningHotSpotHeight(mHotSpotTuner.getHeight());
+        }
+        if (mContinuousMode) {
+            // Keep scanning and hand the code over to the plugin right away, it is validated 
+            // and filtered there off this thread before it is recorded.
+            ContinuousScanListener listener = sContinuousListener;
+            if (listener != null) {
+                listener.didScanBarcode(mSettings.reportedBarcode(barcode), symbology);
+            }
+            return;
+        }
+        if (mSettings.get(ScanSettings.VALIDATE_CHECKSUMS)) {
+            validateAndFinish(barcode, symbology);
+            return;
+        }
+        finishWithScan(barcode, symbology);
+    }
+    
+    /**
+     * Validates the checksum of the code on the result executor, which keeps the UI thread free 
+     * as in continuous mode, and finishes with the code if it is valid. A misread keeps scanning.
+     */
+    private void validateAndFinish(final String barcode, final String symbology) {
+        if (mValidating) {
+            return;
+        }
+        mValidating = true;
+        final int checksum = mSettings.getMsiPlesseyChecksum();
+        Runnable validate = new Runnable() {
+            public void run() {
+                final boolean valid = ChecksumValidator.isValid(barcode.trim(), symbology, 
+                        checksum);
+                runOnUiThread(new Runnable() {
+                    public void run() {
+                        mValidating = false;
+                        if (valid && !mSuspended && !isFinishing()) {
+                            finishWithScan(barcode, symbology);
+                        }
+                    }
+                });
+            }
+        };
+        Executor executor = sResultExecutor;
+        if (executor != null) {
+            try {
+                executor.execute(validate);
+                return;
+            } catch (RejectedExecutionException e) {
+                // The plugin is going away, validate here.
+            }
+        }
+        validate.run();
+    }
+    
+    private void finishWithScan(String barcode, String symbology) {
+        recordDecode(symbology);
         finishView();
-        
-        Intent intent = new Intent();
-        intent.putExtra("barcode", barcode.trim());
-        intent.putExtra("symbology", symbology);
-        setResult(SCAN, intent);
-        finish();
+        finishWithResult(SCAN, mSettings.reportedBarcode(barcode), symbology);
+    }
+
+    /**
+     * Lets the adaptive options learn from a code that is reported.
+     */
+    private void recordDecode(String symbology) {
+        if (mSymbologyProfile != null) {
+            mSymbologyProfile.decoded(symbology);
+        }
     }
 
     /** 
@@ -413,10 +424,19 @@ public class ScanditSDKActivity extends Activity implements ScanditSDKListener {
      * @param entry The information entered by the user.
      */
     public void didManualSearch(String entry) {
-        Intent intent = new Intent();
-        intent.putExtra("barcode", entry.trim());
-        intent.putExtra("symbology", "UNKNOWN");
-        setResult(MANUAL, intent);
+        if (mContinuousMode) {
+            ContinuousScanListener listener = sContinuousListener;
+            if (listener != null) {
+                listener.didScanBarcode(entry.trim(), "UNKNOWN");
+            }
+            return;
+        }
+        finishWithResult(MANUAL, entry.trim(), "UNKNOWN");
+    }
+    
+    private void finishWithResult(int resultCode, String barcode, String symbology) {
+        sResults.put(mRequestCode, new String[] { barcode, symbology });
+        setResult(resultCode);
         finish();
     }
     
@@ -425,6 +445,9 @@ public class ScanditSDKActivity extends Activity implements ScanditSDKListener {
      * time.
      */
     private void finishView() {
+        if (mIdleDutyCycler != null) {
+            mIdleDutyCycler.scanningStopped();
+        }
         mBarcodePicker.stopScanning();
         setRequestedOrientation(ActivityInfo.SCREEN_ORIENTATION_UNSPECIFIED);
     }
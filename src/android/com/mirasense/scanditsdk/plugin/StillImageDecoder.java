@@ -0,0 +1,36 @@
+//
+//  Copyright 2010 Mirasense AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+//
+//
+
+package com.mirasense.scanditsdk.plugin;
+
+/**
+ * Decodes codes in still images for the scanImages action. The plugin has no engine for still 
+ * images of its own, apps register one through ScanditSDK.setStillImageDecoder().
+ * 
+ * Implementations are called from several worker threads at once.
+ */
+public interface StillImageDecoder {
+    
+    /**
+     * Decodes a code in a grayscale image.
+     * 
+     * @param luminance One byte per pixel, row by row. Only the first width * height bytes are 
+     *        valid, the array is reused for the next image once this method returns.
+     * @return The code as {barcode, symbology}, or null if the image contains no code.
+     */
+    public String[] decode(byte[] luminance, int width, int height);
+}
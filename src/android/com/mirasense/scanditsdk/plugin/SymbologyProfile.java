@@ -0,0 +1,308 @@
+//
+//  Copyright 2010 Mirasense AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+//
+//
+
+package com.mirasense.scanditsdk.plugin;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.mirasense.scanditsdk.interfaces.ScanditSDK;
+
+/**
+ * Counts the symbologies decoded per context and enables only the ones that make up most of that
+ * history, since every enabled symbology costs decode time in every frame.
+ * 
+ * The counts are saved in the app's preferences. If nothing is decoded for the fallback time, the 
+ * symbologies that were pruned are enabled again for the rest of the session. All methods have to 
+ * be called on the UI thread.
+ */
+final class SymbologyProfile {
+    
+    private static final String PREFERENCES = "ScanditSDK";
+    private static final String KEY_PREFIX = "symbologyCounts.";
+    // Below this many decodes the history is too short to prune anything.
+    private static final int MIN_HISTORY = 50;
+    
+    // The symbologies that can be pruned, with their option names and documented defaults.
+    private static final int[] SYMBOLOGIES = {
+        ScanSettings.EAN13_AND_UPC12, ScanSettings.EAN8, ScanSettings.UPCE, ScanSettings.CODE39, 
+        ScanSettings.CODE128, ScanSettings.ITF, ScanSettings.QR, ScanSettings.DATA_MATRIX, 
+        ScanSettings.MSI_PLESSEY
+    };
+    private static final String[] NAMES = {
+        "ean13AndUpc12", "ean8", "upce", "code39", "code128", "itf", "qr", "dataMatrix", 
+        "msiPlessey"
+    };
+    private static final boolean[] ENABLED_BY_DEFAULT = {
+        true, true, true, true, true, true, false, false, false
+    };
+    
+    private final SharedPreferences mPreferences;
+    private final String mKey;
+    private final float mCoverage;
+    private final long mFallbackMillis;
+    private final long[] mCounts;
+    private final boolean[] mEnabled = new boolean[SYMBOLOGIES.length];
+    private final boolean[] mPruned = new boolean[SYMBOLOGIES.length];
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Runnable mFallback = new Runnable() {
+        public void run() {
+            restore();
+        }
+    };
+    private ScanditSDK mPicker;
+    private boolean mChanged;
+    
+    
+    SymbologyProfile(Context context, String contextKey, float coverage, long fallbackMillis) {
+        mPreferences = context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE);
+        mKey = KEY_PREFIX + contextKey;
+        mCoverage = coverage;
+        mFallbackMillis = fallbackMillis;
+        mCounts = parseCounts(mPreferences.getString(mKey, null));
+    }
+    
+    /**
+     * Disables the symbologies enabled by the settings that are not needed to cover the history. 
+     * Called once the settings have been applied to the picker.
+     */
+    void apply(ScanditSDK picker, ScanSettings settings) {
+        mPicker = picker;
+        long total = 0;
+        for (int i = 0; i < SYMBOLOGIES.length; i++) {
+            mEnabled[i] = isEnabled(settings, i);
+            mPruned[i] = false;
+            if (mEnabled[i]) {
+                total += mCounts[i];
+            }
+        }
+        if (total < MIN_HISTORY) {
+            return;
+        }
+        
+        // Keep the most frequent symbologies until they cover the history.
+        Integer[] order = new Integer[SYMBOLOGIES.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return mCounts[b] < mCounts[a] ? -1 : (mCounts[b] == mCounts[a] ? 0 : 1);
+            }
+        });
+        long covered = 0;
+        for (int i : order) {
+            if (!mEnabled[i]) {
+                continue;
+            }
+            if (covered >= mCoverage * total) {
+                mPruned[i] = true;
+                setEnabled(picker, SYMBOLOGIES[i], false);
+            }
+            covered += mCounts[i];
+        }
+    }
+    
+    /**
+     * Called when changed settings have been applied to the picker. Symbologies the settings 
+     * disable are not enabled again by the fallback.
+     */
+    void settingsChanged(ScanSettings settings) {
+        for (int i = 0; i < SYMBOLOGIES.length; i++) {
+            mEnabled[i] = isEnabled(settings, i);
+            if (!mEnabled[i]) {
+                mPruned[i] = false;
+            }
+        }
+    }
+    
+    /**
+     * Called when the picker starts scanning, starts the fallback time.
+     */
+    void scanningStarted() {
+        mHandler.removeCallbacks(mFallback);
+        mHandler.postDelayed(mFallback, mFallbackMillis);
+    }
+    
+    /**
+     * Called for every code that passed checksum validation and the duplicate filter, counts its 
+     * symbology and restarts the fallback time.
+     */
+    void decoded(String symbology) {
+        int index = indexOf(symbology);
+        if (index >= 0) {
+            mCounts[index]++;
+            mChanged = true;
+        }
+        scanningStarted();
+    }
+    
+    /**
+     * Called when the picker stops scanning, saves the counts.
+     */
+    void scanningStopped() {
+        mHandler.removeCallbacks(mFallback);
+        if (mChanged) {
+            mChanged = false;
+            mPreferences.edit().putString(mKey, formatCounts(mCounts)).apply();
+        }
+    }
+    
+    private void restore() {
+        for (int i = 0; i < SYMBOLOGIES.length; i++) {
+            if (mPruned[i] && mEnabled[i]) {
+                mPruned[i] = false;
+                setEnabled(mPicker, SYMBOLOGIES[i], true);
+            }
+        }
+    }
+    
+    /**
+     * Returns the saved counts of all contexts as {context: {symbology option: count}}.
+     */
+    static JSONObject countsToJSON(Context context) throws JSONException {
+        SharedPreferences preferences = context.getSharedPreferences(
+                PREFERENCES, Context.MODE_PRIVATE);
+        JSONObject result = new JSONObject();
+        for (Map.Entry<String, ?> entry : preferences.getAll().entrySet()) {
+            if (entry.getKey().startsWith(KEY_PREFIX) && entry.getValue() instanceof String) {
+                long[] counts = parseCounts((String) entry.getValue());
+                JSONObject json = new JSONObject();
+                for (int i = 0; i < NAMES.length; i++) {
+                    json.put(NAMES[i], counts[i]);
+                }
+                result.put(entry.getKey().substring(KEY_PREFIX.length()), json);
+            }
+        }
+        return result;
+    }
+    
+    private static boolean isEnabled(ScanSettings settings, int index) {
+        int flag = SYMBOLOGIES[index];
+        return settings.isSet(flag) ? settings.get(flag) : ENABLED_BY_DEFAULT[index];
+    }
+    
+    /**
+     * Maps a symbology as reported by the picker to its index, or returns -1 if it can not be 
+     * pruned.
+     */
+    private static int indexOf(String symbology) {
+        String name = symbology.toUpperCase().replaceAll("[^A-Z0-9]", "");
+        if (name.startsWith("GS1")) {
+            name = name.substring(3);
+        }
+        if (name.equals("EAN13") || name.equals("UPC12") || name.equals("UPCA")) {
+            return 0;
+        } else if (name.equals("EAN8")) {
+            return 1;
+        } else if (name.equals("UPCE")) {
+            return 2;
+        } else if (name.equals("CODE39")) {
+            return 3;
+        } else if (name.equals("CODE128") || name.equals("128")) {
+            return 4;
+        } else if (name.equals("ITF")) {
+            return 5;
+        } else if (name.equals("QR")) {
+            return 6;
+        } else if (name.equals("DATAMATRIX")) {
+            return 7;
+        } else if (name.equals("MSI") || name.equals("MSIPLESSEY")) {
+            return 8;
+        }
+        return -1;
+    }
+    
+    private static void setEnabled(ScanditSDK picker, int symbology, boolean enabled) {
+        switch (symbology) {
+            case ScanSettings.EAN13_AND_UPC12:
+                picker.setEan13AndUpc12Enabled(enabled);
+                break;
+            case ScanSettings.EAN8:
+                picker.setEan8Enabled(enabled);
+                break;
+            case ScanSettings.UPCE:
+                picker.setUpceEnabled(enabled);
+                break;
+            case ScanSettings.CODE39:
+                picker.setCode39Enabled(enabled);
+                break;
+            case ScanSettings.CODE128:
+                picker.setCode128Enabled(enabled);
+                break;
+            case ScanSettings.ITF:
+                picker.setItfEnabled(enabled);
+                break;
+            case ScanSettings.QR:
+                picker.setQrEnabled(enabled);
+                break;
+            case ScanSettings.DATA_MATRIX:
+                picker.setDataMatrixEnabled(enabled);
+                break;
+            case ScanSettings.MSI_PLESSEY:
+                picker.setMsiPlesseyEnabled(enabled);
+                break;
+            default:
+                break;
+        }
+    }
+    
+    /**
+     * Parses counts saved as "name=count,name=count", unknown names are ignored.
+     */
+    private static long[] parseCounts(String value) {
+        long[] counts = new long[NAMES.length];
+        if (value == null) {
+            return counts;
+        }
+        for (String pair : value.split(",")) {
+            int separator = pair.indexOf('=');
+            if (separator < 0) {
+                continue;
+            }
+            int index = Arrays.asList(NAMES).indexOf(pair.substring(0, separator));
+            if (index >= 0) {
+                try {
+                    counts[index] = Long.parseLong(pair.substring(separator + 1));
+                } catch (NumberFormatException e) {
+                    // Treated as never decoded.
+                }
+            }
+        }
+        return counts;
+    }
+    
+    private static String formatCounts(long[] counts) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < NAMES.length; i++) {
+            if (i > 0) {
+                result.append(',');
+            }
+            result.append(NAMES[i]).append('=').append(counts[i]);
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,91 @@
+//
+//  Copyright 2010 Mirasense AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+//
+//
+
+package com.mirasense.scanditsdk.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class Gs1ParserTest {
+    
+    private static final char GS = Gs1Parser.GS;
+    
+    @Test
+    public void parsesCodesMarkedBySymbologyIdentifier() throws JSONException {
+        JSONObject fields = Gs1Parser.parse("]C10109506000134352172712311012AB" + GS + "3103001250",
+                "CODE128");
+        assertEquals(4, fields.length());
+        assertEquals("09506000134352", fields.getString("01"));
+        assertEquals("2027-12-31", fields.getString("17"));
+        assertEquals("12AB", fields.getString("10"));
+        assertEquals(1.25, fields.getDouble("3103"), 0);
+    }
+    
+    @Test
+    public void parsesCodesMarkedByLeadingFnc1() throws JSONException {
+        JSONObject fields = Gs1Parser.parse(GS + "0109506000134352", "DATAMATRIX");
+        assertEquals("09506000134352", fields.getString("01"));
+        assertEquals("09506000134352", 
+                Gs1Parser.parse("]d2" + GS + "0109506000134352").getString("01"));
+        assertEquals("1", Gs1Parser.parse("]Q3921").getString("92"));
+    }
+    
+    @Test
+    public void ignoresCodesNotMarkedAsGs1() {
+        // Reads as (01) 09506000134352, but nothing says it is GS1 data.
+        assertNull(Gs1Parser.parse("0109506000134352", "CODE128"));
+        assertNull(Gs1Parser.parse("]C00109506000134352"));
+        assertNull(Gs1Parser.parse("]E00109506000134352"));
+        assertNull(Gs1Parser.parse(GS + "0109506000134352", "EAN13"));
+        assertNull(Gs1Parser.parse(GS + "0109506000134352", null));
+    }
+    
+    @Test
+    public void rejectsInvalidElementStrings() {
+        // Unknown AI.
+        assertNull(Gs1Parser.parse(GS + "2312345"));
+        // Fixed length data cut short.
+        assertNull(Gs1Parser.parse(GS + "01095060001343"));
+        // Month 13.
+        assertNull(Gs1Parser.parse(GS + "17271331"));
+        // Letters in numeric data.
+        assertNull(Gs1Parser.parse(GS + "0109506000134A52"));
+        // Repeated AI.
+        assertNull(Gs1Parser.parse(GS + "10A" + GS + "10B"));
+        // Marker only.
+        assertNull(Gs1Parser.parse("]C1"));
+        assertNull(Gs1Parser.parse(String.valueOf(GS)));
+    }
+    
+    @Test
+    public void parsesVariableLengthDataUpToFnc1() throws JSONException {
+        JSONObject fields = Gs1Parser.parse(GS + "21ABC" + GS + "37" + "12" + GS + "3922" + "1999");
+        assertEquals("ABC", fields.getString("21"));
+        assertEquals("12", fields.getString("37"));
+        assertEquals(19.99, fields.getDouble("3922"), 0);
+    }
+    
+    @Test
+    public void resolvesDayZeroToTheLastDayOfTheMonth() throws JSONException {
+        assertEquals("2028-02-29", Gs1Parser.parse(GS + "17280200").getString("17"));
+        assertEquals("2027-02-28", Gs1Parser.parse(GS + "17270200").getString("17"));
+    }
+}
@@ -0,0 +1,158 @@
+//
+//  Copyright 2010 Mirasense AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+//
+//
+
+package com.mirasense.scanditsdk.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+public class HotSpotTunerTest {
+    
+    private static final float DELTA = 0.001f;
+    
+    /**
+     * Keeps the preferences in memory, shared by every tuner created with it.
+     */
+    private static final class MemoryContext extends Context implements SharedPreferences {
+        
+        final Map<String, Object> mValues = new HashMap<String, Object>();
+        
+        @Override
+        public SharedPreferences getSharedPreferences(String name, int mode) {
+            return this;
+        }
+        
+        public Map<String, ?> getAll() {
+            return mValues;
+        }
+        
+        public String getString(String key, String defValue) {
+            return mValues.containsKey(key) ? (String) mValues.get(key) : defValue;
+        }
+        
+        public float getFloat(String key, float defValue) {
+            return mValues.containsKey(key) ? (Float) mValues.get(key) : defValue;
+        }
+        
+        public Editor edit() {
+            return new Editor() {
+                public Editor putString(String key, String value) {
+                    mValues.put(key, value);
+                    return this;
+                }
+                
+                public Editor putFloat(String key, float value) {
+                    mValues.put(key, value);
+                    return this;
+                }
+                
+                public void apply() {
+                }
+            };
+        }
+    }
+    
+    private final MemoryContext mContext = new MemoryContext();
+    
+    @Test
+    public void startsInTheMiddleOfTheRange() {
+        assertEquals(0.3f, new HotSpotTuner(mContext, 0.1f, 0.5f, 1000).getHeight(), DELTA);
+    }
+    
+    @Test
+    public void growsWhileCodesTakeLongerThanTheTarget() {
+        HotSpotTuner tuner = new HotSpotTuner(mContext, 0.1f, 0.5f, 1000);
+        tuner.scanningStarted(0);
+        assertTrue(tuner.decoded("4012345678901", 3000));
+        assertEquals(0.35f, tuner.getHeight(), DELTA);
+        assertTrue(tuner.decoded("4012345678902", 6000));
+        assertTrue(tuner.decoded("4012345678903", 9000));
+        assertEquals(0.45f, tuner.getHeight(), DELTA);
+        assertTrue(tuner.decoded("4012345678904", 12000));
+        assertFalse(tuner.decoded("4012345678905", 15000));
+        assertEquals(0.5f, tuner.getHeight(), DELTA);
+    }
+    
+    @Test
+    public void shrinksWhileCodesDecodeWellWithinTheTarget() {
+        HotSpotTuner tuner = new HotSpotTuner(mContext, 0.1f, 0.5f, 1000);
+        tuner.scanningStarted(0);
+        long now = 0;
+        for (int i = 0; i < 10; i++) {
+            now += 200;
+            tuner.decoded("code" + i, now);
+        }
+        assertEquals(0.1f, tuner.getHeight(), DELTA);
+    }
+    
+    @Test
+    public void keepsTheHeightNearTheTarget() {
+        HotSpotTuner tuner = new HotSpotTuner(mContext, 0.1f, 0.5f, 1000);
+        tuner.scanningStarted(0);
+        assertFalse(tuner.decoded("4012345678901", 900));
+        assertFalse(tuner.decoded("4012345678902", 1900));
+        assertEquals(0.3f, tuner.getHeight(), DELTA);
+    }
+    
+    @Test
+    public void countsACodeThatStaysInViewOnce() {
+        HotSpotTuner tuner = new HotSpotTuner(mContext, 0.1f, 0.5f, 1000);
+        tuner.scanningStarted(0);
+        assertFalse(tuner.decoded("4012345678901", 1000));
+        // Decoded again in every frame while it stays in view, as fast samples these would 
+        // shrink the hot spot.
+        for (long now = 1100; now <= 8000; now += 100) {
+            assertFalse(tuner.decoded("4012345678901", now));
+        }
+        // The next code is measured from the last decode of the previous one, from the first it
+        // would take 8 seconds and grow the hot spot.
+        assertFalse(tuner.decoded("4012345678902", 9000));
+        assertEquals(0.3f, tuner.getHeight(), DELTA);
+    }
+    
+    @Test
+    public void ignoresWaitsOfAUserNotScanning() {
+        HotSpotTuner tuner = new HotSpotTuner(mContext, 0.1f, 0.5f, 1000);
+        tuner.scanningStarted(0);
+        assertFalse(tuner.decoded("4012345678901", 60000));
+        assertEquals(0.3f, tuner.getHeight(), DELTA);
+    }
+    
+    @Test
+    public void laterSessionsStartWithWhatWasLearned() {
+        HotSpotTuner first = new HotSpotTuner(mContext, 0.1f, 0.5f, 1000);
+        first.scanningStarted(0);
+        first.decoded("4012345678901", 5000);
+        first.scanningStopped();
+        
+        // A single scan per session is enough to learn, the average carries over.
+        HotSpotTuner second = new HotSpotTuner(mContext, 0.1f, 0.5f, 1000);
+        assertEquals(0.35f, second.getHeight(), DELTA);
+        second.scanningStarted(100000);
+        assertTrue(second.decoded("4012345678902", 100800));
+        assertEquals(0.4f, second.getHeight(), DELTA);
+    }
+}
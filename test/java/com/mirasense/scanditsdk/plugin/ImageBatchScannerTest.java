@@ -0,0 +1,232 @@
+//
+//  Copyright 2010 Mirasense AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+//
+//
+
+package com.mirasense.scanditsdk.plugin;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class ImageBatchScannerTest {
+    
+    private static final int MAX_PIXELS = 64;
+    
+    /**
+     * Fills the image with the number in the file name, "missing" files can not be loaded.
+     */
+    private static final class FakeLoader implements ImageBatchScanner.ImageLoader {
+        
+        final AtomicInteger mAllocations = new AtomicInteger();
+        
+        public byte[] load(File file, int maxPixels, byte[] buffer, int[] size) 
+                throws IOException {
+            if (file.getName().startsWith("missing")) {
+                throw new IOException("Not an image: " + file);
+            }
+            if (buffer == null || buffer.length < maxPixels) {
+                mAllocations.incrementAndGet();
+                buffer = new byte[maxPixels];
+            }
+            byte value = Byte.parseByte(file.getName().replaceAll("\\D", ""));
+            for (int i = 0; i < maxPixels; i++) {
+                buffer[i] = value;
+            }
+            size[0] = 8;
+            size[1] = maxPixels / 8;
+            return buffer;
+        }
+    }
+    
+    /**
+     * Stands in for a real decoder, reports a code for images with an even value and counts how
+     * many decode calls run at the same time.
+     */
+    private static final class FakeDecoder implements StillImageDecoder {
+        
+        final AtomicInteger mRunning = new AtomicInteger();
+        final AtomicInteger mMaxRunning = new AtomicInteger();
+        
+        public String[] decode(byte[] luminance, int width, int height) {
+            int running = mRunning.incrementAndGet();
+            int max;
+            while (running > (max = mMaxRunning.get()) 
+                    && !mMaxRunning.compareAndSet(max, running)) {
+                // Retry until the maximum is updated.
+            }
+            try {
+                Thread.sleep(2);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            mRunning.decrementAndGet();
+            if (luminance[0] % 2 != 0) {
+                return null;
+            }
+            return new String[] { "code" + luminance[width * height - 1], "QR" };
+        }
+    }
+    
+    private static class Results implements ImageBatchScanner.Listener {
+        
+        final Map<String, String[]> mResults = new ConcurrentHashMap<String, String[]>();
+        final Map<String, String> mErrors = new ConcurrentHashMap<String, String>();
+        final AtomicInteger mReports = new AtomicInteger();
+        final CountDownLatch mFinished = new CountDownLatch(1);
+        volatile int mCount = -1;
+        
+        public void didScanImage(String path, String[] result, String error) {
+            mReports.incrementAndGet();
+            if (result != null) {
+                mResults.put(path, result);
+            }
+            if (error != null) {
+                mErrors.put(path, error);
+            }
+        }
+        
+        public void didFinish(int count) {
+            mCount = count;
+            mFinished.countDown();
+        }
+        
+        void await() throws InterruptedException {
+            assertTrue("did not finish", mFinished.await(10, TimeUnit.SECONDS));
+        }
+    }
+    
+    private static List<String> paths(int count) {
+        List<String> paths = new ArrayList<String>();
+        for (int i = 0; i < count; i++) {
+            paths.add("/images/" + i + ".jpg");
+        }
+        return paths;
+    }
+    
+    @Test
+    public void reportsEveryFileOnceAndFinishes() throws InterruptedException {
+        List<String> paths = paths(100);
+        Results results = new Results();
+        new ImageBatchScanner(new FakeLoader(), new FakeDecoder(), MAX_PIXELS).scan(
+                paths, results);
+        results.await();
+        
+        assertEquals(100, results.mCount);
+        assertEquals(100, results.mReports.get());
+        assertEquals(50, results.mResults.size());
+        assertArrayEquals(new String[] { "code42", "QR" }, results.mResults.get("/images/42.jpg"));
+        assertNull(results.mResults.get("/images/43.jpg"));
+        assertTrue(results.mErrors.isEmpty());
+    }
+    
+    @Test
+    public void reportsFilesThatCanNotBeLoaded() throws InterruptedException {
+        Results results = new Results();
+        new ImageBatchScanner(new FakeLoader(), new FakeDecoder(), MAX_PIXELS).scan(
+                Arrays.asList("/images/2.jpg", "/images/missing.jpg"), results);
+        results.await();
+        
+        assertEquals(2, results.mCount);
+        assertEquals(1, results.mResults.size());
+        assertEquals("Not an image: /images/missing.jpg".replace('/', File.separatorChar), 
+                results.mErrors.get("/images/missing.jpg"));
+    }
+    
+    @Test
+    public void reportsListenerFailuresAsErrorsAndFinishes() throws InterruptedException {
+        Results results = new Results() {
+            @Override
+            public void didScanImage(String path, String[] result, String error) {
+                if (result != null && path.equals("/images/4.jpg")) {
+                    throw new IllegalStateException("Callback gone");
+                }
+                super.didScanImage(path, result, error);
+            }
+        };
+        new ImageBatchScanner(new FakeLoader(), new FakeDecoder(), MAX_PIXELS).scan(
+                paths(10), results);
+        results.await();
+        
+        assertEquals(10, results.mCount);
+        assertEquals(10, results.mReports.get());
+        assertEquals(4, results.mResults.size());
+        assertEquals("java.lang.IllegalStateException: Callback gone", 
+                results.mErrors.get("/images/4.jpg"));
+    }
+    
+    @Test
+    public void finishesRightAwayWithoutFiles() throws InterruptedException {
+        Results results = new Results();
+        new ImageBatchScanner(new FakeLoader(), new FakeDecoder(), MAX_PIXELS).scan(
+                Collections.<String>emptyList(), results);
+        results.await();
+        
+        assertEquals(0, results.mCount);
+    }
+    
+    @Test
+    public void boundsWorkersAndReusesTheirBuffers() throws InterruptedException {
+        FakeLoader loader = new FakeLoader();
+        FakeDecoder decoder = new FakeDecoder();
+        Results results = new Results();
+        new ImageBatchScanner(loader, decoder, MAX_PIXELS).scan(paths(64), results);
+        results.await();
+        
+        int workers = ImageBatchScanner.workerCount(MAX_PIXELS);
+        assertTrue(decoder.mMaxRunning.get() <= workers);
+        // One buffer per worker, not per file.
+        assertTrue(loader.mAllocations.get() <= workers);
+    }
+    
+    @Test
+    public void runsConcurrentScansOnTheSharedPool() throws InterruptedException {
+        List<Results> all = new ArrayList<Results>();
+        for (int i = 0; i < 8; i++) {
+            Results results = new Results();
+            new ImageBatchScanner(new FakeLoader(), new FakeDecoder(), MAX_PIXELS).scan(
+                    paths(20), results);
+            all.add(results);
+        }
+        for (Results results : all) {
+            results.await();
+            assertEquals(20, results.mReports.get());
+        }
+    }
+    
+    @Test
+    public void limitsWorkersByMemory() {
+        long maxMemory = Runtime.getRuntime().maxMemory();
+        assertEquals(1, ImageBatchScanner.workerCount((int) Math.min(Integer.MAX_VALUE, 
+                maxMemory)));
+        assertTrue(ImageBatchScanner.workerCount(1) 
+                <= Runtime.getRuntime().availableProcessors());
+    }
+}
@@ -0,0 +1,133 @@
+//
+//  Copyright 2010 Mirasense AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+//
+//
+
+package com.mirasense.scanditsdk.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.mirasense.scanditsdk.ScanditSDKBarcodePicker;
+import com.mirasense.scanditsdk.interfaces.ScanditSDKListener;
+
+public class PreparedBarcodePickerTest {
+    
+    private static final String APP_KEY = "key";
+    
+    private final ScanditSDKListener mListener = new ScanditSDKListener() {
+        public void didCancel() {
+        }
+        
+        public void didScanBarcode(String barcode, String symbology) {
+        }
+        
+        public void didManualSearch(String entry) {
+        }
+    };
+    private ScanditSDKBarcodePicker mPicker;
+    
+    @Before
+    public void setUp() {
+        Context context = new Context() {
+            @Override
+            public SharedPreferences getSharedPreferences(String name, int mode) {
+                return null;
+            }
+        };
+        PreparedBarcodePicker.prepare(context, APP_KEY, false);
+        mPicker = PreparedBarcodePicker.acquire(APP_KEY, false, mListener);
+    }
+    
+    @After
+    public void tearDown() {
+        PreparedBarcodePicker.recycle(mListener);
+        PreparedBarcodePicker.release();
+    }
+    
+    private static ScanSettings settings(String options) throws Exception {
+        return ScanSettings.forArgs("[\"" + APP_KEY + "\", " + options + "]");
+    }
+    
+    /**
+     * Stands in for what the symbology profile and the hot spot tuner set during a scan.
+     */
+    private void adapt() {
+        mPicker.setQrEnabled(false);
+        mPicker.setCode39Enabled(false);
+        mPicker.setScanningHotSpotHeight(0.45f);
+    }
+    
+    private void reuse() {
+        PreparedBarcodePicker.recycle(mListener);
+        assertSame(mPicker, PreparedBarcodePicker.acquire(APP_KEY, false, mListener));
+    }
+    
+    @Test
+    public void reuseAfterAdaptiveScanRestoresTheSameSettings() throws Exception {
+        ScanSettings adaptive = settings("{\"qr\": true, \"autoProfile\": true, "
+                + "\"adaptiveHotSpot\": true}");
+        PreparedBarcodePicker.apply(mPicker, adaptive, null);
+        adapt();
+        
+        reuse();
+        PreparedBarcodePicker.apply(mPicker, adaptive, null);
+        
+        Map<String, Object> state = mPicker.state();
+        assertEquals(true, state.get("setQrEnabled"));
+        assertEquals(true, state.get("setCode39Enabled"));
+        assertEquals(0.25f, state.get("setScanningHotSpotHeight"));
+    }
+    
+    @Test
+    public void reuseAfterAdaptiveScanRestoresOtherSettings() throws Exception {
+        PreparedBarcodePicker.apply(mPicker, 
+                settings("{\"dataMatrix\": true, \"adaptiveHotSpot\": true}"), null);
+        adapt();
+        
+        reuse();
+        PreparedBarcodePicker.apply(mPicker, settings("{\"scanningHotSpotHeight\": 0.3}"), null);
+        
+        Map<String, Object> state = mPicker.state();
+        assertEquals(false, state.get("setQrEnabled"));
+        assertEquals(false, state.get("setDataMatrixEnabled"));
+        assertEquals(true, state.get("setCode39Enabled"));
+        assertEquals(0.3f, state.get("setScanningHotSpotHeight"));
+    }
+    
+    @Test
+    public void updateDuringAdaptiveScanKeepsWhatTheAdaptersSet() throws Exception {
+        ScanSettings adaptive = settings("{\"qr\": true, \"autoProfile\": true, "
+                + "\"adaptiveHotSpot\": true}");
+        PreparedBarcodePicker.apply(mPicker, adaptive, null);
+        adapt();
+        
+        PreparedBarcodePicker.apply(mPicker, settings("{\"qr\": true, \"autoProfile\": true, "
+                + "\"adaptiveHotSpot\": true, \"beep\": false}"), adaptive);
+        
+        Map<String, Object> state = mPicker.state();
+        assertEquals(false, state.get("setQrEnabled"));
+        assertEquals(0.45f, state.get("setScanningHotSpotHeight"));
+    }
+}
@@ -0,0 +1,361 @@
+//
+//  Copyright 2010 Mirasense AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+//
+//
+
+package com.mirasense.scanditsdk.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Runs the uploader against a local HTTP server that answers with scripted response codes.
+ */
+public class ScanUploaderTest {
+    
+    private static final long WAIT = 5000;
+    
+    /**
+     * A request as the server received it.
+     */
+    private static final class Upload {
+        
+        final JSONObject mBody;
+        final String mEncoding;
+        final String mAuthorization;
+        final long mTime;
+        
+        Upload(JSONObject body, String encoding, String authorization, long time) {
+            mBody = body;
+            mEncoding = encoding;
+            mAuthorization = authorization;
+            mTime = time;
+        }
+    }
+    
+    /**
+     * Records the gzip decoded requests and answers with the next queued response code, or 200.
+     * Requests wait for mGate before they are answered.
+     */
+    private final class Recorder implements HttpHandler {
+        
+        public void handle(HttpExchange exchange) throws IOException {
+            long time = System.currentTimeMillis();
+            try {
+                // The request is read to the end before it is decompressed, otherwise the 
+                // connection is not reused.
+                byte[] gzip = readFully(exchange.getRequestBody());
+                byte[] body = readFully(new GZIPInputStream(new ByteArrayInputStream(gzip)));
+                mUploads.add(new Upload(new JSONObject(new String(body, "UTF-8")), 
+                        exchange.getRequestHeaders().getFirst("Content-Encoding"), 
+                        exchange.getRequestHeaders().getFirst("Authorization"), time));
+                mGate.await(WAIT, TimeUnit.MILLISECONDS);
+                Integer code = mResponses.poll();
+                exchange.sendResponseHeaders(code == null ? 200 : code, -1);
+            } catch (JSONException e) {
+                exchange.sendResponseHeaders(500, -1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                exchange.close();
+            }
+        }
+    }
+    
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+    
+    /**
+     * Collects the status events and the final stop result.
+     */
+    private static final class RecordingCallback extends CallbackContext {
+        
+        final BlockingQueue<PluginResult> mResults = new LinkedBlockingQueue<PluginResult>();
+        
+        @Override
+        public void sendPluginResult(PluginResult pluginResult) {
+            mResults.add(pluginResult);
+        }
+        
+        JSONObject next() throws Exception {
+            PluginResult result = mResults.poll(WAIT, TimeUnit.MILLISECONDS);
+            assertNotNull("No status reported", result);
+            return new JSONObject(result.getMessage());
+        }
+        
+        JSONObject nextEvent(String event) throws Exception {
+            JSONObject status = next();
+            assertEquals(status.toString(), event, status.getString("event"));
+            return status;
+        }
+    }
+    
+    private final BlockingQueue<Upload> mUploads = new LinkedBlockingQueue<Upload>();
+    private final BlockingQueue<Integer> mResponses = new LinkedBlockingQueue<Integer>();
+    private CountDownLatch mGate = new CountDownLatch(0);
+    private HttpServer mServer;
+    private ExecutorService mServerExecutor;
+    private ScanUploader mUploader;
+    
+    @Before
+    public void startServer() throws IOException {
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.createContext("/scans", new Recorder());
+        mServerExecutor = Executors.newCachedThreadPool();
+        mServer.setExecutor(mServerExecutor);
+        mServer.start();
+    }
+    
+    @After
+    public void stopServer() throws InterruptedException {
+        mGate.countDown();
+        if (mUploader != null) {
+            mUploader.stop(null);
+        }
+        mServer.stop(0);
+        mServerExecutor.shutdownNow();
+    }
+    
+    private ScanUploader start(RecordingCallback callback, String config) throws JSONException {
+        JSONObject json = new JSONObject(config);
+        json.put("url", "http://127.0.0.1:" + mServer.getAddress().getPort() + "/scans");
+        mUploader = new ScanUploader(json, callback);
+        return mUploader;
+    }
+    
+    private Upload nextUpload() throws InterruptedException {
+        Upload upload = mUploads.poll(WAIT, TimeUnit.MILLISECONDS);
+        assertNotNull("No request received", upload);
+        return upload;
+    }
+    
+    private static void assertScans(Upload upload, long batch, String... barcodes) 
+            throws JSONException {
+        assertEquals(batch, upload.mBody.getLong("batch"));
+        JSONArray scans = upload.mBody.getJSONArray("scans");
+        assertEquals(barcodes.length, scans.length());
+        for (int i = 0; i < barcodes.length; i++) {
+            assertEquals(barcodes[i], scans.getJSONObject(i).getString("barcode"));
+            assertEquals("ean13", scans.getJSONObject(i).getString("symbology"));
+        }
+    }
+    
+    @Test
+    public void sendsFullBatchesAndFlushesTheRestOnStop() throws Exception {
+        RecordingCallback callback = new RecordingCallback();
+        ScanUploader uploader = start(callback, "{batchSize: 3, batchInterval: 60000, "
+                + "headers: {Authorization: 'Bearer token'}, metadata: {device: 'test'}}");
+        for (int i = 1; i <= 7; i++) {
+            assertTrue(uploader.add("code" + i, "ean13"));
+        }
+        
+        Upload first = nextUpload();
+        assertScans(first, 1, "code1", "code2", "code3");
+        assertEquals("gzip", first.mEncoding);
+        assertEquals("Bearer token", first.mAuthorization);
+        assertEquals("test", first.mBody.getJSONObject("metadata").getString("device"));
+        Upload second = nextUpload();
+        assertScans(second, 2, "code4", "code5", "code6");
+        assertEquals(first.mBody.getString("session"), second.mBody.getString("session"));
+        assertEquals(3, callback.nextEvent("delivered").getInt("count"));
+        assertEquals(3, callback.nextEvent("delivered").getInt("count"));
+        // The last code waits for the interval, which is longer than the test.
+        assertNull(mUploads.poll(200, TimeUnit.MILLISECONDS));
+        
+        RecordingCallback stopped = new RecordingCallback();
+        uploader.stop(stopped);
+        mUploader = null;
+        assertScans(nextUpload(), 3, "code7");
+        callback.nextEvent("delivered");
+        JSONObject status = stopped.next();
+        assertEquals(0, status.getInt("queued"));
+        assertEquals(7, status.getInt("delivered"));
+        assertEquals(0, status.getInt("failed"));
+        assertFalse(uploader.add("code8", "ean13"));
+    }
+    
+    @Test
+    public void flushesAPartialBatchAfterTheInterval() throws Exception {
+        RecordingCallback callback = new RecordingCallback();
+        ScanUploader uploader = start(callback, "{batchSize: 50, batchInterval: 100}");
+        long added = System.currentTimeMillis();
+        uploader.add("code1", "ean13");
+        uploader.add("code2", "ean13");
+        
+        Upload upload = nextUpload();
+        assertScans(upload, 1, "code1", "code2");
+        assertTrue(upload.mTime - added >= 90);
+        assertEquals(2, callback.nextEvent("delivered").getInt("count"));
+    }
+    
+    @Test
+    public void retriesServerErrorsWithGrowingBackoff() throws Exception {
+        mResponses.add(503);
+        mResponses.add(503);
+        mResponses.add(503);
+        RecordingCallback callback = new RecordingCallback();
+        ScanUploader uploader = start(callback, 
+                "{batchInterval: 0, initialBackoff: 100, maxBackoff: 300}");
+        uploader.add("code1", "ean13");
+        
+        // Every retry waits its backoff, of which up to a half is taken off as jitter.
+        long[] backoff = { 100, 200, 300 };
+        Upload previous = nextUpload();
+        for (int i = 0; i < backoff.length; i++) {
+            JSONObject retrying = callback.nextEvent("retrying");
+            assertEquals(1, retrying.getLong("batch"));
+            assertEquals("HTTP 503", retrying.getString("error"));
+            long retryIn = retrying.getLong("retryIn");
+            assertTrue("retryIn " + retryIn, retryIn >= backoff[i] / 2 && retryIn <= backoff[i]);
+            Upload upload = nextUpload();
+            assertScans(upload, 1, "code1");
+            assertTrue(upload.mTime - previous.mTime >= retryIn - 10);
+            previous = upload;
+        }
+        
+        JSONObject delivered = callback.nextEvent("delivered");
+        assertEquals(1, delivered.getLong("batch"));
+        assertEquals(3, delivered.getInt("retries"));
+        assertEquals(1, delivered.getInt("delivered"));
+    }
+    
+    @Test
+    public void givesUpAfterMaxRetries() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            mResponses.add(500);
+        }
+        RecordingCallback callback = new RecordingCallback();
+        ScanUploader uploader = start(callback, 
+                "{batchInterval: 0, maxRetries: 2, initialBackoff: 10, maxBackoff: 20}");
+        uploader.add("code1", "ean13");
+        
+        callback.nextEvent("retrying");
+        callback.nextEvent("retrying");
+        JSONObject failed = callback.nextEvent("failed");
+        assertEquals("HTTP 500", failed.getString("error"));
+        assertEquals(1, failed.getInt("failed"));
+        assertEquals(0, failed.getInt("queued"));
+        assertEquals(3, mUploads.size());
+    }
+    
+    @Test
+    public void doesNotRetryClientErrors() throws Exception {
+        mResponses.add(400);
+        RecordingCallback callback = new RecordingCallback();
+        ScanUploader uploader = start(callback, "{batchInterval: 0, initialBackoff: 10}");
+        uploader.add("code1", "ean13");
+        
+        JSONObject failed = callback.nextEvent("failed");
+        assertEquals("HTTP 400", failed.getString("error"));
+        assertEquals(0, failed.getInt("retries"));
+        nextUpload();
+        assertNull(mUploads.poll(200, TimeUnit.MILLISECONDS));
+    }
+    
+    @Test
+    public void rejectsHeadersWithLineBreaks() throws Exception {
+        try {
+            start(new RecordingCallback(), 
+                    "{headers: {Authorization: 'Bearer token\\r\\nX-Injected: 1'}}");
+            fail("Header accepted");
+        } catch (JSONException e) {
+            assertEquals("Illegal value for headers: Authorization", e.getMessage());
+        }
+    }
+    
+    @Test
+    public void dropsCodesWhileTheQueueIsFull() throws Exception {
+        mGate = new CountDownLatch(1);
+        RecordingCallback callback = new RecordingCallback();
+        ScanUploader uploader = start(callback, 
+                "{batchSize: 5, maxQueueSize: 5, batchInterval: 0}");
+        
+        // The first code goes out on its own and the server holds on to it, the codes queued 
+        // behind it count against the limit.
+        assertTrue(uploader.add("code1", "ean13"));
+        assertScans(nextUpload(), 1, "code1");
+        for (int i = 2; i <= 5; i++) {
+            assertTrue(uploader.add("code" + i, "ean13"));
+        }
+        assertFalse(uploader.add("code6", "ean13"));
+        assertFalse(uploader.add("code7", "ean13"));
+        
+        assertEquals(2, uploader.getStatus().getLong("dropped"));
+        assertEquals(5, uploader.getStatus().getInt("queued"));
+        
+        // The status callback hears of the overflow once, however many codes were dropped.
+        mGate.countDown();
+        int overflows = 0;
+        int delivered = 0;
+        JSONObject status = null;
+        while (overflows == 0 || delivered < 5) {
+            status = callback.next();
+            if ("overflow".equals(status.getString("event"))) {
+                overflows++;
+                assertEquals(2, status.getInt("dropped"));
+            } else {
+                assertEquals(status.toString(), "delivered", status.getString("event"));
+                delivered += status.getInt("count");
+            }
+        }
+        assertEquals(1, overflows);
+        assertEquals(5, delivered);
+        assertEquals(0, status.getInt("queued"));
+        assertNull(callback.mResults.poll(200, TimeUnit.MILLISECONDS));
+        
+        // There is room again once the batches are delivered.
+        mUploads.clear();
+        assertTrue(uploader.add("code8", "ean13"));
+        assertEquals("code8", nextUpload().mBody.getJSONArray("scans").getJSONObject(0)
+                .getString("barcode"));
+    }
+}
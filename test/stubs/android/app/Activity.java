@@ -0,0 +1,127 @@
+//
+//  Copyright 2010 Mirasense AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+//
+//
+
+package android.app;
+
+import java.io.File;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.content.res.Resources;
+import android.os.Bundle;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.Window;
+
+/**
+ * Stand-in for the Android class, with only what the plugin classes use. There is no main thread
+ * on the JVM, runOnUiThread runs the action right away.
+ */
+public class Activity extends Context {
+    
+    public static final int RESULT_CANCELED = 0;
+    public static final int RESULT_OK = -1;
+    
+    private final Window mWindow = new Window();
+    private final Resources mResources = new Resources();
+    private Intent mIntent;
+    private int mResultCode = RESULT_CANCELED;
+    private boolean mFinishing;
+    private File mFilesDir;
+    
+    @Override
+    public SharedPreferences getSharedPreferences(String name, int mode) {
+        return null;
+    }
+    
+    public Intent getIntent() {
+        return mIntent;
+    }
+    
+    public void setIntent(Intent intent) {
+        mIntent = intent;
+    }
+    
+    public File getFilesDir() {
+        if (mFilesDir == null) {
+            mFilesDir = new File(System.getProperty("java.io.tmpdir"));
+        }
+        return mFilesDir;
+    }
+    
+    public Resources getResources() {
+        return mResources;
+    }
+    
+    public Window getWindow() {
+        return mWindow;
+    }
+    
+    public final boolean requestWindowFeature(int featureId) {
+        return true;
+    }
+    
+    public void setRequestedOrientation(int requestedOrientation) {
+    }
+    
+    public void setContentView(View view) {
+    }
+    
+    public void addContentView(View view, ViewGroup.LayoutParams params) {
+        view.setLayoutParams(params);
+    }
+    
+    public final void runOnUiThread(Runnable action) {
+        action.run();
+    }
+    
+    public final void setResult(int resultCode) {
+        mResultCode = resultCode;
+    }
+    
+    /**
+     * Not part of Android, returns the code the activity set with setResult.
+     */
+    public final int getResultCode() {
+        return mResultCode;
+    }
+    
+    public void finish() {
+        mFinishing = true;
+    }
+    
+    public boolean isFinishing() {
+        return mFinishing;
+    }
+    
+    protected void onCreate(Bundle savedInstanceState) {
+    }
+    
+    protected void onResume() {
+    }
+    
+    protected void onPause() {
+    }
+    
+    protected void onDestroy() {
+    }
+    
+    public void onBackPressed() {
+        finish();
+    }
+}
@@ -0,0 +1,52 @@
+//
+//  Copyright 2010 Mirasense AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+//
+//
+
+package android.content;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stand-in for the Android class, with only what the plugin classes use. Extras are kept in a map
+ * instead of being marshalled into a parcel.
+ */
+public class Intent {
+    
+    private final String mClassName;
+    private Map<String, Object> mExtras;
+    
+    public Intent(Context packageContext, Class<?> cls) {
+        mClassName = cls.getName();
+    }
+    
+    public String getClassName() {
+        return mClassName;
+    }
+    
+    public Intent putExtra(String name, int value) {
+        if (mExtras == null) {
+            mExtras = new HashMap<String, Object>();
+        }
+        mExtras.put(name, value);
+        return this;
+    }
+    
+    public int getIntExtra(String name, int defaultValue) {
+        Object value = mExtras != null ? mExtras.get(name) : null;
+        return value instanceof Integer ? (Integer) value : defaultValue;
+    }
+}
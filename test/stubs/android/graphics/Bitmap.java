@@ -0,0 +1,53 @@
+//
+//  Copyright 2010 Mirasense AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+//
+//
+
+package android.graphics;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Stand-in for the Android class, backed by an image of the JVM.
+ */
+public final class Bitmap {
+    
+    public enum Config {
+        ALPHA_8, RGB_565, ARGB_4444, ARGB_8888
+    }
+    
+    private BufferedImage mImage;
+    
+    Bitmap(BufferedImage image) {
+        mImage = image;
+    }
+    
+    public int getWidth() {
+        return mImage.getWidth();
+    }
+    
+    public int getHeight() {
+        return mImage.getHeight();
+    }
+    
+    public void getPixels(int[] pixels, int offset, int stride, int x, int y, int width, 
+                          int height) {
+        mImage.getRGB(x, y, width, height, pixels, offset, stride);
+    }
+    
+    public void recycle() {
+        mImage = null;
+    }
+}
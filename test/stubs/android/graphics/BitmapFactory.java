@@ -0,0 +1,75 @@
+//
+//  Copyright 2010 Mirasense AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+//
+//
+
+package android.graphics;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Stand-in for the Android class, which decodes through ImageIO. Subsampling is done by skipping
+ * pixels after the whole image was read.
+ */
+public class BitmapFactory {
+    
+    public static class Options {
+        public boolean inJustDecodeBounds;
+        public int inSampleSize;
+        public Bitmap.Config inPreferredConfig;
+        public int outWidth;
+        public int outHeight;
+    }
+    
+    public static Bitmap decodeFile(String pathName, Options opts) {
+        BufferedImage image;
+        try {
+            image = ImageIO.read(new File(pathName));
+        } catch (IOException e) {
+            image = null;
+        }
+        if (image == null) {
+            if (opts != null) {
+                opts.outWidth = -1;
+                opts.outHeight = -1;
+            }
+            return null;
+        }
+        int sampleSize = opts != null ? Math.max(1, opts.inSampleSize) : 1;
+        int width = image.getWidth() / sampleSize;
+        int height = image.getHeight() / sampleSize;
+        if (opts != null) {
+            opts.outWidth = width;
+            opts.outHeight = height;
+            if (opts.inJustDecodeBounds) {
+                return null;
+            }
+        }
+        if (sampleSize > 1) {
+            BufferedImage sampled = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    sampled.setRGB(x, y, image.getRGB(x * sampleSize, y * sampleSize));
+                }
+            }
+            image = sampled;
+        }
+        return new Bitmap(image);
+    }
+}
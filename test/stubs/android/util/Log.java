@@ -0,0 +1,52 @@
+//
+//  Copyright 2010 Mirasense AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+//
+//
+
+package android.util;
+
+/**
+ * Stand-in for the Android class that writes to standard error.
+ */
+public final class Log {
+    
+    private Log() {
+    }
+    
+    public static int i(String tag, String msg) {
+        return println("I", tag, msg, null);
+    }
+    
+    public static int w(String tag, String msg) {
+        return println("W", tag, msg, null);
+    }
+    
+    public static int w(String tag, String msg, Throwable tr) {
+        return println("W", tag, msg, tr);
+    }
+    
+    public static int e(String tag, String msg) {
+        return println("E", tag, msg, null);
+    }
+    
+    public static int e(String tag, String msg, Throwable tr) {
+        return println("E", tag, msg, tr);
+    }
+    
+    private static int println(String priority, String tag, String msg, Throwable tr) {
+        System.err.println(priority + "/" + tag + ": " + msg + (tr != null ? " " + tr : ""));
+        return 0;
+    }
+}
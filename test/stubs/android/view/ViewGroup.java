@@ -0,0 +1,71 @@
+//
+//  Copyright 2010 Mirasense AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+//
+//
+
+package android.view;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stand-in for the Android class, with only what the plugin classes under test use.
+ */
+public class ViewGroup extends View implements ViewParent {
+    
+    private final List<View> mChildren = new ArrayList<View>();
+    
+    public void addView(View child, LayoutParams params) {
+        child.setLayoutParams(params);
+        child.setParent(this);
+        mChildren.add(child);
+    }
+    
+    public void removeView(View view) {
+        if (mChildren.remove(view)) {
+            view.setParent(null);
+        }
+    }
+    
+    public int getChildCount() {
+        return mChildren.size();
+    }
+    
+    public static class LayoutParams {
+        
+        public static final int MATCH_PARENT = -1;
+        public static final int WRAP_CONTENT = -2;
+        
+        public int width;
+        public int height;
+        
+        public LayoutParams(int width, int height) {
+            this.width = width;
+            this.height = height;
+        }
+    }
+    
+    public static class MarginLayoutParams extends LayoutParams {
+        
+        public int leftMargin;
+        public int topMargin;
+        public int rightMargin;
+        public int bottomMargin;
+        
+        public MarginLayoutParams(int width, int height) {
+            super(width, height);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+//
+//  Copyright 2010 Mirasense AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+//
+//
+
+package android.view;
+
+/**
+ * Stand-in for the Android interface, with only what the plugin classes use.
+ */
+public interface WindowManager {
+    
+    public static class LayoutParams extends ViewGroup.LayoutParams {
+        
+        public static final int FLAG_FULLSCREEN = 0x00000400;
+        
+        public LayoutParams() {
+            super(MATCH_PARENT, MATCH_PARENT);
+        }
+    }
+}
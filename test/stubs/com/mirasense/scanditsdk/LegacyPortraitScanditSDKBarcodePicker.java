@@ -0,0 +1,30 @@
+//
+//  Copyright 2010 Mirasense AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+//
+//
+
+package com.mirasense.scanditsdk;
+
+import android.content.Context;
+
+/**
+ * Stand-in for the landscape picker of the Scandit SDK, see ScanditSDKBarcodePicker.
+ */
+public class LegacyPortraitScanditSDKBarcodePicker extends ScanditSDKBarcodePicker {
+    
+    public LegacyPortraitScanditSDKBarcodePicker(Context context, String appKey) {
+        super(context, appKey);
+    }
+}
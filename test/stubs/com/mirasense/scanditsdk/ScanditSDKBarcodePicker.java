@@ -0,0 +1,160 @@
+//
+//  Copyright 2010 Mirasense AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+//
+//
+
+package com.mirasense.scanditsdk;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+import android.content.Context;
+import android.view.View;
+
+import com.mirasense.scanditsdk.interfaces.ScanditSDK;
+import com.mirasense.scanditsdk.interfaces.ScanditSDKOverlay;
+
+/**
+ * Stand-in for the picker of the Scandit SDK. It decodes nothing, the picker and overlay setters 
+ * only record their last value by setter name, which tests read through state().
+ */
+public class ScanditSDKBarcodePicker extends View implements ScanditSDK {
+    
+    private final Map<String, Object> mState = new HashMap<String, Object>();
+    private final ScanditSDKOverlay mOverlay = (ScanditSDKOverlay) Proxy.newProxyInstance(
+            ScanditSDKOverlay.class.getClassLoader(), new Class<?>[] { ScanditSDKOverlay.class }, 
+            new InvocationHandler() {
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    if (method.getName().startsWith("set") || method.getName().startsWith("show")
+                            || method.getName().startsWith("draw")) {
+                        mState.put(method.getName(), args.length == 1 ? args[0] : args);
+                    }
+                    return null;
+                }
+            });
+    private boolean mScanning;
+    
+    public ScanditSDKBarcodePicker(Context context, String appKey) {
+        this(context, appKey, CAMERA_FACING_BACK);
+    }
+    
+    public ScanditSDKBarcodePicker(Context context, String appKey, int cameraFacing) {
+    }
+    
+    public static boolean canRunPortraitPicker() {
+        return true;
+    }
+    
+    /**
+     * Not part of the SDK, returns the values last set by setter name.
+     */
+    public Map<String, Object> state() {
+        return mState;
+    }
+    
+    /**
+     * Not part of the SDK.
+     */
+    public boolean isScanning() {
+        return mScanning;
+    }
+    
+    public ScanditSDKOverlay getOverlayView() {
+        return mOverlay;
+    }
+    
+    public void startScanning() {
+        mScanning = true;
+    }
+    
+    public void stopScanning() {
+        mScanning = false;
+    }
+    
+    public void set1DScanningEnabled(boolean enabled) {
+        mState.put("set1DScanningEnabled", enabled);
+    }
+    
+    public void set2DScanningEnabled(boolean enabled) {
+        mState.put("set2DScanningEnabled", enabled);
+    }
+    
+    public void setEan13AndUpc12Enabled(boolean enabled) {
+        mState.put("setEan13AndUpc12Enabled", enabled);
+    }
+    
+    public void setEan8Enabled(boolean enabled) {
+        mState.put("setEan8Enabled", enabled);
+    }
+    
+    public void setUpceEnabled(boolean enabled) {
+        mState.put("setUpceEnabled", enabled);
+    }
+    
+    public void setCode39Enabled(boolean enabled) {
+        mState.put("setCode39Enabled", enabled);
+    }
+    
+    public void setCode128Enabled(boolean enabled) {
+        mState.put("setCode128Enabled", enabled);
+    }
+    
+    public void setItfEnabled(boolean enabled) {
+        mState.put("setItfEnabled", enabled);
+    }
+    
+    public void setQrEnabled(boolean enabled) {
+        mState.put("setQrEnabled", enabled);
+    }
+    
+    public void setDataMatrixEnabled(boolean enabled) {
+        mState.put("setDataMatrixEnabled", enabled);
+    }
+    
+    public void setMsiPlesseyEnabled(boolean enabled) {
+        mState.put("setMsiPlesseyEnabled", enabled);
+    }
+    
+    public void setMsiPlesseyChecksumType(int type) {
+        mState.put("setMsiPlesseyChecksumType", type);
+    }
+    
+    public void setInverseRecognitionEnabled(boolean enabled) {
+        mState.put("setInverseRecognitionEnabled", enabled);
+    }
+    
+    public void setMicroDataMatrixEnabled(boolean enabled) {
+        mState.put("setMicroDataMatrixEnabled", enabled);
+    }
+    
+    public void force2dRecognition(boolean force) {
+        mState.put("force2dRecognition", force);
+    }
+    
+    public void setScanningHotSpot(float x, float y) {
+        mState.put("setScanningHotSpot", new float[] { x, y });
+    }
+    
+    public void setScanningHotSpotHeight(float height) {
+        mState.put("setScanningHotSpotHeight", height);
+    }
+    
+    public void ignorePreviewAspectRatio() {
+        mState.put("ignorePreviewAspectRatio", true);
+    }
+}
@@ -0,0 +1,76 @@
+//
+//  Copyright 2010 Mirasense AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+//
+//
+
+package com.mirasense.scanditsdk.interfaces;
+
+/**
+ * Stand-in for the picker interface of the Scandit SDK, with only what the plugin classes under 
+ * test use.
+ */
+public interface ScanditSDK {
+    
+    int CAMERA_FACING_BACK = 0;
+    int CAMERA_FACING_FRONT = 1;
+    
+    int CHECKSUM_NONE = 0;
+    int CHECKSUM_MOD_10 = 1;
+    int CHECKSUM_MOD_11 = 2;
+    int CHECKSUM_MOD_1010 = 3;
+    int CHECKSUM_MOD_1110 = 4;
+    
+    ScanditSDKOverlay getOverlayView();
+    
+    void startScanning();
+    
+    void stopScanning();
+    
+    void set1DScanningEnabled(boolean enabled);
+    
+    void set2DScanningEnabled(boolean enabled);
+    
+    void setEan13AndUpc12Enabled(boolean enabled);
+    
+    void setEan8Enabled(boolean enabled);
+    
+    void setUpceEnabled(boolean enabled);
+    
+    void setCode39Enabled(boolean enabled);
+    
+    void setCode128Enabled(boolean enabled);
+    
+    void setItfEnabled(boolean enabled);
+    
+    void setQrEnabled(boolean enabled);
+    
+    void setDataMatrixEnabled(boolean enabled);
+    
+    void setMsiPlesseyEnabled(boolean enabled);
+    
+    void setMsiPlesseyChecksumType(int type);
+    
+    void setInverseRecognitionEnabled(boolean enabled);
+    
+    void setMicroDataMatrixEnabled(boolean enabled);
+    
+    void force2dRecognition(boolean force);
+    
+    void setScanningHotSpot(float x, float y);
+    
+    void setScanningHotSpotHeight(float height);
+    
+    void ignorePreviewAspectRatio();
+}
@@ -0,0 +1,77 @@
+//
+//  Copyright 2010 Mirasense AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+//
+//
+
+package com.mirasense.scanditsdk.interfaces;
+
+/**
+ * Stand-in for the overlay interface of the Scandit SDK, with only what the plugin classes under
+ * test use.
+ */
+public interface ScanditSDKOverlay {
+    
+    int CAMERA_SWITCH_NEVER = 0;
+    int CAMERA_SWITCH_ON_TABLET = 1;
+    int CAMERA_SWITCH_ALWAYS = 2;
+    
+    void addListener(ScanditSDKListener listener);
+    
+    void showSearchBar(boolean show);
+    
+    void showTitleBar(boolean show);
+    
+    void showToolBar(boolean show);
+    
+    void setBeepEnabled(boolean enabled);
+    
+    void setVibrateEnabled(boolean enabled);
+    
+    void setTorchEnabled(boolean enabled);
+    
+    void setTorchButtonPosition(float x, float y, int width, int height);
+    
+    void setCameraSwitchVisibility(int visibility);
+    
+    void setCameraSwitchButtonPosition(float x, float y, int width, int height);
+    
+    void setTextForInitialScanScreenState(String text);
+    
+    void setTextForBarcodePresenceDetected(String text);
+    
+    void setTextForBarcodeDecodingInProgress(String text);
+    
+    void setTitleMessage(String text);
+    
+    void setLeftButtonCaption(String text);
+    
+    void setLeftButtonCaptionWhenKeypadVisible(String text);
+    
+    void setRightButtonCaption(String text);
+    
+    void setRightButtonCaptionWhenKeypadVisible(String text);
+    
+    void setSearchBarPlaceholderText(String text);
+    
+    void setViewfinderDimension(float width, float height);
+    
+    void setViewfinderDimension(float x, float y, float width, float height);
+    
+    void drawViewfinderTextHook(boolean draw);
+    
+    void setViewfinderColor(float r, float g, float b);
+    
+    void setViewfinderDecodedColor(float r, float g, float b);
+}
@@ -0,0 +1,106 @@
+//
+//  Copyright 2010 Mirasense AG
+//
+//  Licensed under the Apache License, Version 2.0 (the "License");
+//  you may not use this file except in compliance with the License.
+//  You may obtain a copy of the License at
+//
+//  http://www.apache.org/licenses/LICENSE-2.0
+//
+//  Unless required by applicable law or agreed to in writing, software
+//  distributed under the License is distributed on an "AS IS" BASIS,
+//  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//  See the License for the specific language governing permissions and
+//  limitations under the License.
+//
+//
+
+package org.apache.cordova;
+
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Stand-in for the Cordova class, with only what the plugin classes use. Like the real class it 
+ * encodes the message when the result is created, binary messages as Base64.
+ */
+public class PluginResult {
+    
+    public enum Status {
+        NO_RESULT, OK, CLASS_NOT_FOUND_EXCEPTION, ILLEGAL_ACCESS_EXCEPTION, INSTANTIATION_EXCEPTION,
+        MALFORMED_URL_EXCEPTION, IO_EXCEPTION, INVALID_ACTION, JSON_EXCEPTION, ERROR
+    }
+    
+    private final int mStatus;
+    private final String mMessage;
+    private final List<PluginResult> mMultipartMessages;
+    private boolean mKeepCallback;
+    
+    public PluginResult(Status status) {
+        this(status, (String) null);
+    }
+    
+    public PluginResult(Status status, String message) {
+        this(status, message == null ? "null" : JSONObject.quote(message), null);
+    }
+    
+    public PluginResult(Status status, JSONObject message) {
+        this(status, message.toString(), null);
+    }
+    
+    public PluginResult(Status status, JSONArray message) {
+        this(status, message.toString(), null);
+    }
+    
+    public PluginResult(Status status, int i) {
+        this(status, String.valueOf(i), null);
+    }
+    
+    public PluginResult(Status status, boolean b) {
+        this(status, String.valueOf(b), null);
+    }
+    
+    public PluginResult(Status status, byte[] data) {
+        this(status, java.util.Base64.getEncoder().encodeToString(data), null);
+    }
+    
+    public PluginResult(Status status, List<PluginResult> multipartMessages) {
+        this(status, null, multipartMessages);
+    }
+    
+    private PluginResult(Status status, String message, List<PluginResult> multipartMessages) {
+        mStatus = status.ordinal();
+        mMessage = message;
+        mMultipartMessages = multipartMessages;
+    }
+    
+    public void setKeepCallback(boolean keepCallback) {
+        mKeepCallback = keepCallback;
+    }
+    
+    public int getStatus() {
+        return mStatus;
+    }
+    
+    /**
+     * Returns the message encoded as JSON, or as Base64 for binary messages. Null for multipart
+     * results.
+     */
+    public String getMessage() {
+        return mMessage;
+    }
+    
+    public int getMultipartMessagesSize() {
+        return mMultipartMessages != null ? mMultipartMessages.size() : 0;
+    }
+    
+    public PluginResult getMultipartMessage(int index) {
+        return mMultipartMessages.get(index);
+    }
+    
+    public boolean getKeepCallback() {
+        return mKeepCallback;
+    }
+}
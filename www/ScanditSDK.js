@@ -0,0 +1,129 @@
+/*
+ * Promise based interface to the ScanditSDK plugin.
+ *
+ * Every call completes its own promise, calls can be made while others are still running. Scans
+ * started while a scan screen is open are handled according to their queuePolicy option.
+ *
+ * Continuous scans, show and startUpload report any number of results and end without a final
+ * result when they are stopped, so they take a callback for the results and one for the error
+ * they fail with, e.g. "Canceled", and return nothing. scanImages takes a callback for the
+ * results of the single images and returns a promise for the summary at the end.
+ *
+ * The plugin is only implemented for Android.
+ *
+ * Results with the binaryResult option arrive as several callback arguments, they are passed on
+ * as one array like all other results: [ArrayBuffer, symbology, ...].
+ */
+var exec = require('cordova/exec');
+
+function single(callback) {
+    return function (result) {
+        callback(arguments.length > 1 ? Array.prototype.slice.call(arguments) : result);
+    };
+}
+
+function call(action, args) {
+    return new Promise(function (resolve, reject) {
+        exec(single(resolve), reject, 'ScanditSDK', action, args || []);
+    });
+}
+
+function stream(action, args, onResult, onError) {
+    exec(single(onResult), onError || function () {}, 'ScanditSDK', action, args);
+}
+
+function copy(options) {
+    var result = {};
+    for (var key in options) {
+        if (Object.prototype.hasOwnProperty.call(options, key)) {
+            result[key] = options[key];
+        }
+    }
+    return result;
+}
+
+module.exports = {
+    scan: function (appKey, options) {
+        return call('scan', [appKey, options || {}]);
+    },
+    scanContinuously: function (appKey, options, onResult, onError) {
+        // Leave the caller's options as they are, they may be reused for single scans.
+        options = copy(options);
+        options.continuousMode = true;
+        stream('scan', [appKey, options], onResult, onError);
+    },
+    stop: function () {
+        return call('stop');
+    },
+    prepare: function (appKey, options) {
+        return call('prepare', [appKey, options || {}]);
+    },
+    release: function () {
+        return call('release');
+    },
+    show: function (appKey, options, onResult, onError) {
+        stream('show', [appKey, options || {}], onResult, onError);
+    },
+    hide: function () {
+        return call('hide');
+    },
+    resize: function (frame) {
+        return call('resize', [frame]);
+    },
+    updateSettings: function (options) {
+        return call('updateSettings', [options]);
+    },
+    getMetrics: function () {
+        return call('getMetrics');
+    },
+    resetMetrics: function () {
+        return call('resetMetrics');
+    },
+    loadCatalog: function (index) {
+        return call('loadCatalog', [index]);
+    },
+    buildCatalog: function (csv, index) {
+        return call('buildCatalog', [csv, index]);
+    },
+    closeCatalog: function () {
+        return call('closeCatalog');
+    },
+    scanImages: function (paths, options, onResult) {
+        return new Promise(function (resolve, reject) {
+            exec(function (result) {
+                if (result.done) {
+                    resolve(result);
+                } else {
+                    onResult(result);
+                }
+            }, reject, 'ScanditSDK', 'scanImages', [paths, options || {}]);
+        });
+    },
+    readJournal: function (fromSeq, limit) {
+        return call('readJournal', [fromSeq || 0, limit || 100]);
+    },
+    truncateJournal: function (beforeSeq) {
+        return call('truncateJournal', [beforeSeq]);
+    },
+    getSymbologyStats: function () {
+        return call('getSymbologyStats');
+    },
+    loadManifest: function (codes, options) {
+        return call('loadManifest', [codes, options || {}]);
+    },
+    getManifestStatus: function () {
+        return call('getManifestStatus');
+    },
+    clearManifest: function () {
+        return call('clearManifest');
+    },
+    startUpload: function (config, onStatus, onError) {
+        stream('startUpload', [config], onStatus, onError);
+    },
+    stopUpload: function () {
+        return call('stopUpload');
+    },
+    getUploadStatus: function () {
+        return call('getUploadStatus');
+    }
+};